@@ -680,6 +680,11 @@ function setMessageHeaderSpacerHeight(messageDomId, spacerHeight) {
     setSpacerHeight(spacer, spacerHeight);
 }
 
+function setMessageFooterSpacerHeight(messageDomId, spacerHeight) {
+    var spacer = document.querySelector("#" + messageDomId + " > .mail-message-footer");
+    setSpacerHeight(spacer, spacerHeight);
+}
+
 function setSpacerHeight(spacer, spacerHeight) {
     if (!spacer) {
         console.log("can't set spacer for message with id: " + messageDomId);
@@ -767,13 +772,34 @@ function replaceMessageBodies(messageIds) {
     measurePositions();
 }
 
-// handle the special case of adding a single new message at the end of a conversation
-function appendMessageHtml() {
-    var msg = document.createElement("div");
-    msg.innerHTML = window.mail.getTempMessageBodies();
-    var body = msg.children[0];  // toss the outer div, it was just to render innerHTML into
-    document.body.insertBefore(body, document.getElementById("conversation-footer"));
-    processNewMessageBody(body.querySelector(".mail-message-content"));
+function appendTempMessageBodies() {
+    var footer = document.getElementById("conversation-footer");
+    var msgs = document.createElement("div");
+    var body;
+    msgs.innerHTML = window.mail.getTempMessageBodies();
+    // toss the outer div, it was just to render innerHTML into
+    while ((body = msgs.firstElementChild)) {
+        document.body.insertBefore(body, footer);
+        processNewMessageBody(body.querySelector(".mail-message-content"));
+    }
+}
+
+// handle messages removed from a conversation, and new messages added at the end of it, in place
+function removeAndAppendMessages(removedMessageIds, append) {
+    var i, len;
+    var msg;
+
+    for (i = 0, len = removedMessageIds.length; i < len; i++) {
+        msg = document.getElementById(removedMessageIds[i]);
+        if (msg) {
+            msg.parentNode.removeChild(msg);
+        } else {
+            console.log("Mail message " + removedMessageIds[i] + " to remove not found.");
+        }
+    }
+    if (append) {
+        appendTempMessageBodies();
+    }
     disablePostForms();
     measurePositions();
 }
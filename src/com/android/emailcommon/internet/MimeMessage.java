@@ -172,9 +172,7 @@ public class MimeMessage extends Message {
     public Date getSentDate() throws MessagingException {
         if (mSentDate == null) {
             try {
-                DateTimeField field = (DateTimeField)Field.parse("Date: "
-                        + MimeUtility.unfoldAndDecode(getFirstHeader("Date")));
-                mSentDate = field.getDate();
+                mSentDate = parseDate(getFirstHeader("Date"));
                 // TODO: We should make it more clear what exceptions can be thrown here,
                 // and whether they reflect a normal or error condition.
             } catch (Exception e) {
@@ -184,9 +182,7 @@ public class MimeMessage extends Message {
         if (mSentDate == null) {
             // If we still don't have a date, fall back to "Delivery-date"
             try {
-                DateTimeField field = (DateTimeField)Field.parse("Date: "
-                        + MimeUtility.unfoldAndDecode(getFirstHeader("Delivery-date")));
-                mSentDate = field.getDate();
+                mSentDate = parseDate(getFirstHeader("Delivery-date"));
                 // TODO: We should make it more clear what exceptions can be thrown here,
                 // and whether they reflect a normal or error condition.
             } catch (Exception e) {
@@ -196,6 +192,22 @@ public class MimeMessage extends Message {
         return mSentDate;
     }
 
+    /**
+     * Parses the value of a date header. The common forms are handled by
+     * {@link Rfc2822DateParser}, and anything else by the mime4j parser.
+     */
+    private static Date parseDate(String header) {
+        final String value = MimeUtility.unfoldAndDecode(header);
+        if (value != null) {
+            final long time = Rfc2822DateParser.parse(value);
+            if (time != Rfc2822DateParser.NOT_PARSED) {
+                return new Date(time);
+            }
+        }
+        final DateTimeField field = (DateTimeField) Field.parse("Date: " + value);
+        return field.getDate();
+    }
+
     @Override
     public void setSentDate(Date sentDate) throws MessagingException {
         setHeader("Date", DATE_FORMAT.format(sentDate));
@@ -35,10 +35,12 @@ import org.apache.james.mime4j.decoder.DecoderUtil;
 import org.apache.james.mime4j.decoder.QuotedPrintableInputStream;
 import org.apache.james.mime4j.util.CharsetUtil;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -49,6 +51,9 @@ public class MimeUtility {
     public static final String MIME_TYPE_RFC822 = "message/rfc822";
     private final static Pattern PATTERN_CR_OR_LF = Pattern.compile("\r|\n");
 
+    // Chars decoded at a time by getTextFromPart()
+    private static final int TEXT_BUFFER_SIZE = 4096;
+
     /**
      * Replace sequences of CRLF+WSP with WSP.  Tries to preserve original string
      * object whenever possible.
@@ -225,20 +230,29 @@ public class MimeUtility {
      * or an error during conversion.
      */
     public static String getTextFromPart(Part part, ArrayList<InputStream> outInputStreams) {
+        return getTextFromPart(part, outInputStreams, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the Part's body and returns a String based on any charset conversion that needed
+     * to be done. The body is decoded as it is read, so that only the text is held in memory
+     * rather than the text and all of the bytes it was decoded from.
+     * @param part The part containing a body
+     * @param outInputStreams A list of input streams the opened body stream should be added to.
+     *                        If null is passed the stream should be closed.
+     * @param maxLength The most chars to return. Reading stops once they have been decoded, e.g.
+     *                  when only a preview of a long body is needed.
+     * @return a String containing the converted text in the body, or null if there was no text
+     * or an error during conversion.
+     */
+    public static String getTextFromPart(Part part, ArrayList<InputStream> outInputStreams,
+            int maxLength) {
         InputStream in = null;
-        ByteArrayOutputStream out = null;
         try {
             if (part != null && part.getBody() != null) {
                 in = part.getBody().getInputStream();
                 String mimeType = part.getMimeType();
                 if (mimeType != null && MimeUtility.mimeTypeMatches(mimeType, "text/*")) {
-                    /*
-                     * Now we read the part into a buffer for further processing. Because
-                     * the stream is now wrapped we'll remove any transfer encoding at this point.
-                     */
-                    out = new ByteArrayOutputStream();
-                    IOUtils.copy(in, out);
-
                     /*
                      * We've got a text part, so let's see if it needs to be processed further.
                      */
@@ -256,9 +270,11 @@ public class MimeUtility {
                         charset = "ASCII";
                     }
                     /*
-                     * Convert and return as new String
+                     * Decode the part as it is read. Because the stream is now wrapped, any
+                     * transfer encoding is removed at this point.
                      */
-                    return out.toString(charset);
+                    return readText(new InputStreamReader(in, Charset.forName(charset)),
+                            in.available(), maxLength);
                 }
             }
 
@@ -277,7 +293,6 @@ public class MimeUtility {
              */
             Log.e(LOG_TAG, "Unable to getTextFromPart " + e.toString());
         } finally {
-            IOUtils.closeQuietly(out);
             if (outInputStreams != null && in != null) {
                 outInputStreams.add(in);
             } else {
@@ -287,6 +302,26 @@ public class MimeUtility {
         return null;
     }
 
+    /**
+     * Reads up to maxLength chars from the reader.
+     * @param sizeHint The expected number of bytes behind the reader, used to size the buffer.
+     *                 A charset decodes no more chars than bytes in all but exotic cases, and if
+     *                 it does, the buffer just grows.
+     */
+    private static String readText(Reader reader, int sizeHint, int maxLength)
+            throws IOException {
+        final StringBuilder sb = new StringBuilder(
+                Math.min(Math.max(sizeHint, TEXT_BUFFER_SIZE), maxLength));
+        final char[] buffer = new char[TEXT_BUFFER_SIZE];
+        int count;
+        while (sb.length() < maxLength
+                && (count = reader.read(buffer, 0,
+                        Math.min(buffer.length, maxLength - sb.length()))) != -1) {
+            sb.append(buffer, 0, count);
+        }
+        return sb.toString();
+    }
+
     /**
      * Returns true if the given mimeType matches the matchAgainst specification.  The comparison
      * ignores case and the matchAgainst string may include "*" for a wildcard (e.g. "image/*").
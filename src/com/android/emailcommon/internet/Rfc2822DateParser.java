@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.emailcommon.internet;
+
+/**
+ * Parses the common forms of RFC 2822 dates, e.g. "Thu, 10 Dec 2009 15:08:08 -0700 (PDT)",
+ * without the generated mime4j DateTimeParser. It creates no objects and keeps no state, so it
+ * can be called from any thread.
+ *
+ * Anything this doesn't recognize, such as an unusual spelling, a three digit year or a
+ * military zone, is left to the mime4j parser. Values are interpreted the same way as there,
+ * including out of range days and seconds that roll over into the next month or minute.
+ */
+public final class Rfc2822DateParser {
+    /** Returned by {@link #parse(String)} when the date is not of a common form. */
+    public static final long NOT_PARSED = Long.MIN_VALUE;
+
+    private static final String[] DAYS_OF_WEEK =
+            {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final String[] MONTHS =
+            {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+    // The obsolete zone names, and their offsets in hours
+    private static final String[] ZONE_NAMES =
+            {"UT", "GMT", "EST", "EDT", "CST", "CDT", "MST", "MDT", "PST", "PDT"};
+    private static final int[] ZONE_OFFSETS = {0, 0, -5, -4, -6, -5, -7, -6, -8, -7};
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    private Rfc2822DateParser() {}
+
+    /**
+     * @param date the unfolded value of a date header
+     * @return the date in milliseconds since the epoch, or {@link #NOT_PARSED}
+     */
+    public static long parse(String date) {
+        final int length = date.length();
+        int pos = skipWhitespace(date, 0);
+
+        // [day-of-week ","]
+        if (pos < length && !isDigit(date.charAt(pos))) {
+            if (indexOfName(date, pos, DAYS_OF_WEEK) < 0) {
+                return NOT_PARSED;
+            }
+            pos = skipWhitespace(date, pos + 3);
+            if (pos >= length || date.charAt(pos) != ',') {
+                return NOT_PARSED;
+            }
+            pos = skipWhitespace(date, pos + 1);
+        }
+
+        // day month year
+        final int dayEnd = skipDigits(date, pos);
+        if (dayEnd == pos || dayEnd - pos > 2) {
+            return NOT_PARSED;
+        }
+        final int day = parseDigits(date, pos, dayEnd);
+        pos = skipWhitespace(date, dayEnd);
+        if (pos == dayEnd) {
+            return NOT_PARSED;
+        }
+        final int month = indexOfName(date, pos, MONTHS) + 1;
+        if (month == 0) {
+            return NOT_PARSED;
+        }
+        pos += 3;
+        int yearStart = skipWhitespace(date, pos);
+        if (yearStart == pos) {
+            return NOT_PARSED;
+        }
+        final int yearEnd = skipDigits(date, yearStart);
+        int year = parseDigits(date, yearStart, yearEnd);
+        if (yearEnd - yearStart == 2) {
+            year += year < 50 ? 2000 : 1900;
+        } else if (yearEnd - yearStart != 4 || year < 1600) {
+            // Other years are rare, and the Julian calendar applies before 1582
+            return NOT_PARSED;
+        }
+
+        // hour ":" minute [":" second]
+        pos = skipWhitespace(date, yearEnd);
+        final int hourEnd = skipDigits(date, pos);
+        if (pos == yearEnd || hourEnd == pos || hourEnd - pos > 2
+                || hourEnd + 3 > length || date.charAt(hourEnd) != ':') {
+            return NOT_PARSED;
+        }
+        final int hour = parseDigits(date, pos, hourEnd);
+        final int minute = parseTwoDigits(date, hourEnd + 1);
+        pos = hourEnd + 3;
+        int second = 0;
+        if (pos < length && date.charAt(pos) == ':') {
+            if (pos + 3 > length) {
+                return NOT_PARSED;
+            }
+            second = parseTwoDigits(date, pos + 1);
+            pos += 3;
+        }
+        if (day < 1 || day > 31 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 60) {
+            return NOT_PARSED;
+        }
+
+        // zone: ("+" / "-") 4DIGIT, or an obsolete zone name
+        final int zoneStart = skipWhitespace(date, pos);
+        if (zoneStart == pos || zoneStart >= length) {
+            return NOT_PARSED;
+        }
+        final int zoneMinutes;
+        final char c = date.charAt(zoneStart);
+        if (c == '+' || c == '-') {
+            zoneMinutes = parseZoneOffset(date, zoneStart);
+            if (zoneMinutes == Integer.MIN_VALUE) {
+                return NOT_PARSED;
+            }
+            pos = zoneStart + 5;
+        } else {
+            final int zone = indexOfZoneName(date, zoneStart);
+            if (zone < 0) {
+                return NOT_PARSED;
+            }
+            pos = zoneStart + ZONE_NAMES[zone].length();
+            if (zone == 1 && pos < length && (date.charAt(pos) == '+'
+                    || date.charAt(pos) == '-')) {
+                // "GMT-0700" at the end of the date, which LogUtils.cleanUpMimeDate() accepts
+                zoneMinutes = parseZoneOffset(date, pos);
+                if (zoneMinutes == Integer.MIN_VALUE || pos + 5 != length) {
+                    return NOT_PARSED;
+                }
+                pos += 5;
+            } else {
+                zoneMinutes = ZONE_OFFSETS[zone] * 60;
+            }
+        }
+
+        // [comment]
+        final int commentStart = skipWhitespace(date, pos);
+        if (commentStart < length && date.charAt(commentStart) == '(') {
+            pos = commentStart + 1;
+            while (pos < length && date.charAt(pos) != ')') {
+                final char commentChar = date.charAt(pos);
+                if (commentChar == '(' || commentChar == '\\') {
+                    return NOT_PARSED;
+                }
+                pos++;
+            }
+            if (pos == length) {
+                return NOT_PARSED;
+            }
+            pos++;
+        }
+        if (skipWhitespace(date, pos) != length) {
+            return NOT_PARSED;
+        }
+
+        final long days = daysFromCivil(year, month) + day - 1;
+        final long minutes = ((days * 24 + hour) * 60 + minute) - zoneMinutes;
+        return minutes * MILLIS_PER_MINUTE + second * 1000L;
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to the first of the given month, in the
+     * proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month) {
+        // Count years from March, so that the leap day is the last day of the year
+        if (month <= 2) {
+            year--;
+        }
+        final int era = year / 400;
+        final int yearOfEra = year - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * Parses "+HHMM" or "-HHMM" at the given position.
+     * @return the offset in minutes, or Integer.MIN_VALUE if there are not 4 digits
+     */
+    private static int parseZoneOffset(String date, int pos) {
+        if (pos + 5 > date.length() || skipDigits(date, pos + 1) != pos + 5) {
+            return Integer.MIN_VALUE;
+        }
+        final int offset = parseTwoDigits(date, pos + 1) * 60 + parseTwoDigits(date, pos + 3);
+        return date.charAt(pos) == '-' ? -offset : offset;
+    }
+
+    private static int indexOfName(String date, int pos, String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (date.startsWith(names[i], pos)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the zone name at the given position. It must not be followed by a letter, e.g. "UT"
+     * is not matched in "UTC".
+     */
+    private static int indexOfZoneName(String date, int pos) {
+        final int zone = indexOfName(date, pos, ZONE_NAMES);
+        if (zone >= 0) {
+            final int end = pos + ZONE_NAMES[zone].length();
+            if (end < date.length() && Character.isLetter(date.charAt(end))) {
+                return -1;
+            }
+        }
+        return zone;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int skipDigits(String date, int pos) {
+        final int length = date.length();
+        while (pos < length && isDigit(date.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipWhitespace(String date, int pos) {
+        final int length = date.length();
+        while (pos < length) {
+            final char c = date.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int parseDigits(String date, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + date.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    /**
+     * @return the value of the two digits at the given position, or -1 if they aren't digits
+     */
+    private static int parseTwoDigits(String date, int pos) {
+        final char tens = date.charAt(pos);
+        final char ones = date.charAt(pos + 1);
+        if (!isDigit(tens) || !isDigit(ones)) {
+            return -1;
+        }
+        return (tens - '0') * 10 + ones - '0';
+    }
+}
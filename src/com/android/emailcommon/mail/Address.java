@@ -30,6 +30,7 @@ import org.apache.james.mime4j.codec.EncoderUtil;
 import org.apache.james.mime4j.decoder.DecoderUtil;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 /**
@@ -64,24 +65,6 @@ public class Address implements Parcelable {
 
     // Regex that matches address surrounded by '<>' optionally. '^<?([^>]+)>?$'
     private static final Pattern REMOVE_OPTIONAL_BRACKET = Pattern.compile("^<?([^>]+)>?$");
-    // Regex that matches personal name surrounded by '""' optionally. '^"?([^"]+)"?$'
-    private static final Pattern REMOVE_OPTIONAL_DQUOTE = Pattern.compile("^\"?([^\"]*)\"?$");
-    // Regex that matches escaped character '\\([\\"])'
-    private static final Pattern UNQUOTE = Pattern.compile("\\\\([\\\\\"])");
-
-    // TODO: LOCAL_PART and DOMAIN_PART_PART are too permissive and can be improved.
-    // TODO: Fix this to better constrain comments.
-    /** Regex for the local part of an email address. */
-    private static final String LOCAL_PART = "[^@]+";
-    /** Regex for each part of the domain part, i.e. the thing between the dots. */
-    private static final String DOMAIN_PART_PART = "[[\\w][\\d]\\-\\(\\)\\[\\]]+";
-    /** Regex for the domain part, which is two or more {@link #DOMAIN_PART_PART} separated by . */
-    private static final String DOMAIN_PART =
-            "(" + DOMAIN_PART_PART + "\\.)+" + DOMAIN_PART_PART;
-
-    /** Pattern to check if an email address is valid. */
-    private static final Pattern EMAIL_ADDRESS =
-            Pattern.compile("\\A" + LOCAL_PART + "@" + DOMAIN_PART + "\\z");
 
     private static final Address[] EMPTY_ADDRESS_ARRAY = new Address[0];
 
@@ -91,6 +74,14 @@ public class Address implements Parcelable {
 
     private static final String LOG_TAG = LogTag.getLogTag();
 
+    /**
+     * Cache of {@link #getEmailAddress(String)}, indexed by the hash of the raw address. A new
+     * entry simply replaces the one in its slot, so lookups and updates need no lock.
+     */
+    private static final int EMAIL_ADDRESS_CACHE_SIZE = 512;
+    private static final AtomicReferenceArray<CachedAddress> sEmailAddressCache =
+            new AtomicReferenceArray<CachedAddress>(EMAIL_ADDRESS_CACHE_SIZE);
+
     @VisibleForTesting
     public Address(String address) {
         setAddress(address);
@@ -129,10 +120,30 @@ public class Address implements Parcelable {
         return mSimplifiedName;
     }
 
-    public static synchronized Address getEmailAddress(String rawAddress) {
+    /**
+     * Parses a single raw address, e.g. "name &lt;address&gt;". Results are cached, so the
+     * returned Address may be shared and must not be modified.
+     */
+    public static Address getEmailAddress(String rawAddress) {
         if (TextUtils.isEmpty(rawAddress)) {
             return null;
         }
+        final int index = (rawAddress.hashCode() & Integer.MAX_VALUE) % EMAIL_ADDRESS_CACHE_SIZE;
+        final CachedAddress cached = sEmailAddressCache.get(index);
+        if (cached != null && cached.rawAddress.equals(rawAddress)) {
+            return cached.address;
+        }
+
+        Address address = parseSimpleEmailAddress(rawAddress);
+        if (address == null) {
+            address = parseEmailAddress(rawAddress);
+        }
+        sEmailAddressCache.set(index, new CachedAddress(rawAddress, address));
+        return address;
+    }
+
+    @VisibleForTesting
+    static Address parseEmailAddress(String rawAddress) {
         String name, address;
         final Rfc822Token[] tokens = Rfc822Tokenizer.tokenize(rawAddress);
         if (tokens.length > 0) {
@@ -148,6 +159,83 @@ public class Address implements Parcelable {
         return new Address(address, name);
     }
 
+    /**
+     * Parses the common forms "address" and "name &lt;address&gt;" without the tokenizer and the
+     * html decoding, when they contain nothing that the tokenizer or the html decoding would
+     * change: no quotes, comments, lists, entities or runs of whitespace.
+     *
+     * @return the parsed address, or null if the raw address is not of a simple form
+     */
+    @VisibleForTesting
+    static Address parseSimpleEmailAddress(String rawAddress) {
+        final int length = rawAddress.length();
+        final int addressStart;
+        final int addressEnd;
+        final int lessThan = rawAddress.indexOf('<');
+        if (lessThan < 0) {
+            addressStart = 0;
+            addressEnd = length;
+        } else if (rawAddress.charAt(length - 1) == '>') {
+            addressStart = lessThan + 1;
+            addressEnd = length - 1;
+        } else {
+            return null;
+        }
+
+        char prev = ' ';
+        for (int i = 0; i < lessThan; i++) {
+            final char c = rawAddress.charAt(i);
+            if ((c == ' ' && prev == ' ' && i > 0) || !isSimpleAddressChar(c, true)) {
+                return null;
+            }
+            prev = c;
+        }
+        if (addressStart == addressEnd) {
+            return null;
+        }
+        for (int i = addressStart; i < addressEnd; i++) {
+            if (!isSimpleAddressChar(rawAddress.charAt(i), false)) {
+                return null;
+            }
+        }
+
+        final String name = lessThan > 0 ? rawAddress.substring(0, lessThan).trim() : "";
+        return new Address(rawAddress.substring(addressStart, addressEnd), name);
+    }
+
+    private static boolean isSimpleAddressChar(char c, boolean inName) {
+        if (c < ' ') {
+            return false;
+        }
+        switch (c) {
+            case ' ':
+                return inName;
+            case '"':
+            case '\\':
+            case '(':
+            case ')':
+            case '<':
+            case '>':
+            case ',':
+            case ';':
+            case '&':
+                return false;
+            default:
+                return !Character.isWhitespace(c);
+        }
+    }
+
+    /** An entry of the getEmailAddress cache. */
+    private static class CachedAddress {
+        final String rawAddress;
+        final Address address;
+
+        CachedAddress(String rawAddress, Address address) {
+            this.rawAddress = rawAddress;
+            this.address = address;
+        }
+    }
+
     public String getAddress() {
         return mAddress;
     }
@@ -183,8 +271,7 @@ public class Address implements Parcelable {
      */
     public static String decodeAddressPersonal(String personal) {
         if (personal != null) {
-            personal = REMOVE_OPTIONAL_DQUOTE.matcher(personal).replaceAll("$1");
-            personal = UNQUOTE.matcher(personal).replaceAll("$1");
+            personal = unquote(removeOptionalDoubleQuotes(personal));
             personal = DecoderUtil.decodeEncodedWords(personal);
             if (personal.length() == 0) {
                 personal = null;
@@ -193,6 +280,53 @@ public class Address implements Parcelable {
         return personal;
     }
 
+    /**
+     * Removes a double quote from the start and one from the end of the string, if there are no
+     * other double quotes in it. Otherwise returns the string unchanged.
+     */
+    private static String removeOptionalDoubleQuotes(String s) {
+        int start = 0;
+        int end = s.length();
+        if (end > 0 && s.charAt(0) == '"') {
+            start++;
+        }
+        if (end > start && s.charAt(end - 1) == '"') {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '"') {
+                return s;
+            }
+        }
+        return s.substring(start, end);
+    }
+
+    /**
+     * Replaces the escaped characters \\ and \" by the character they escape.
+     */
+    private static String unquote(String s) {
+        int i = s.indexOf('\\');
+        if (i < 0) {
+            return s;
+        }
+        final int length = s.length();
+        final StringBuilder sb = new StringBuilder(length);
+        sb.append(s, 0, i);
+        for (; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                final char next = s.charAt(i + 1);
+                if (next == '\\' || next == '"') {
+                    sb.append(next);
+                    i++;
+                    continue;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
     /**
      * This method is used to check that all the addresses that the user
      * entered in a list (e.g. To:) are valid, so that none is dropped.
@@ -200,13 +334,10 @@ public class Address implements Parcelable {
     @VisibleForTesting
     public static boolean isAllValid(String addressList) {
         // This code mimics the parse() method below.
-        // I don't know how to better avoid the code-duplication.
         if (addressList != null && addressList.length() > 0) {
-            Rfc822Token[] tokens = Rfc822Tokenizer.tokenize(addressList);
-            for (int i = 0, length = tokens.length; i < length; ++i) {
-                Rfc822Token token = tokens[i];
-                String address = token.getAddress();
-                if (!TextUtils.isEmpty(address) && !isValidAddress(address)) {
+            final AddressListScanner scanner = new AddressListScanner(addressList);
+            while (scanner.next()) {
+                if (!isValidAddress(scanner.mAddress)) {
                     return false;
                 }
             }
@@ -225,19 +356,15 @@ public class Address implements Parcelable {
         if (addressList == null || addressList.length() == 0) {
             return EMPTY_ADDRESS_ARRAY;
         }
-        Rfc822Token[] tokens = Rfc822Tokenizer.tokenize(addressList);
+        final AddressListScanner scanner = new AddressListScanner(addressList);
         ArrayList<Address> addresses = new ArrayList<Address>();
-        for (int i = 0, length = tokens.length; i < length; ++i) {
-            Rfc822Token token = tokens[i];
-            String address = token.getAddress();
-            if (!TextUtils.isEmpty(address)) {
-                if (isValidAddress(address)) {
-                    String name = token.getName();
-                    if (TextUtils.isEmpty(name)) {
-                        name = null;
-                    }
-                    addresses.add(new Address(address, name));
+        while (scanner.next()) {
+            if (isValidAddress(scanner.mAddress)) {
+                String name = scanner.mName;
+                if (TextUtils.isEmpty(name)) {
+                    name = null;
                 }
+                addresses.add(new Address(scanner.mAddress, name));
             }
         }
         return addresses.toArray(new Address[addresses.size()]);
@@ -246,10 +373,206 @@ public class Address implements Parcelable {
     /**
      * Checks whether a string email address is valid.
      * E.g. name@domain.com is valid.
+     *
+     * A valid address is a local part of one or more characters other than '@', an '@', and a
+     * domain part. The domain part is two or more non-empty parts separated by '.', made of
+     * word characters (letters, digits, marks and connector punctuation), '-', '(', ')', '['
+     * and ']'.
      */
     @VisibleForTesting
     static boolean isValidAddress(final String address) {
-        return EMAIL_ADDRESS.matcher(address).find();
+        final int at = address.indexOf('@');
+        if (at < 1) {
+            return false;
+        }
+        final int length = address.length();
+        int dots = 0;
+        boolean partEmpty = true;
+        for (int i = at + 1; i < length; ) {
+            final int c = address.codePointAt(i);
+            if (c == '.') {
+                if (partEmpty) {
+                    return false;
+                }
+                dots++;
+                partEmpty = true;
+            } else if (isDomainChar(c)) {
+                partEmpty = false;
+            } else {
+                return false;
+            }
+            i += Character.charCount(c);
+        }
+        return dots > 0 && !partEmpty;
+    }
+
+    private static boolean isDomainChar(int c) {
+        switch (c) {
+            case '-':
+            case '(':
+            case ')':
+            case '[':
+            case ']':
+            case '_':
+            case '\u200c':
+            case '\u200d':
+                return true;
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    return true;
+                }
+                switch (Character.getType(c)) {
+                    case Character.LETTER_NUMBER:
+                    case Character.NON_SPACING_MARK:
+                    case Character.ENCLOSING_MARK:
+                    case Character.COMBINING_SPACING_MARK:
+                    case Character.CONNECTOR_PUNCTUATION:
+                        return true;
+                    default:
+                        return false;
+                }
+        }
+    }
+
+    /**
+     * Splits an RFC822 address list into its addresses in a single pass. The addresses and names
+     * are the same as the ones {@link Rfc822Tokenizer} finds, but no token object is created for
+     * each address, and comments are skipped rather than collected.
+     */
+    private static class AddressListScanner {
+        private final CharSequence mText;
+        private final int mLength;
+        private int mPos = 0;
+        private final StringBuilder mNameBuilder = new StringBuilder();
+        private final StringBuilder mAddressBuilder = new StringBuilder();
+
+        /** The address found by the last call to {@link #next()}. */
+        String mAddress;
+        /** The name found by the last call to {@link #next()}, or null if it had none. */
+        String mName;
+
+        AddressListScanner(CharSequence text) {
+            mText = text;
+            mLength = text.length();
+        }
+
+        /**
+         * Finds the next non-empty address of the list.
+         * @return false if there are no more addresses
+         */
+        boolean next() {
+            while (mPos < mLength) {
+                scanAddress();
+                if (mAddressBuilder.length() > 0) {
+                    mAddress = mAddressBuilder.toString();
+                    mName = mNameBuilder.toString();
+                    return true;
+                } else if (mNameBuilder.length() > 0) {
+                    // Without angle brackets, the name is the address
+                    mAddress = mNameBuilder.toString();
+                    mName = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Scans up to and including the next ',' or ';' that is not quoted, in brackets or in
+         * a comment. Unquoted spaces in the name are first recorded as '\0', and then squeezed
+         * into single spaces.
+         */
+        private void scanAddress() {
+            final CharSequence text = mText;
+            final int length = mLength;
+            final StringBuilder name = mNameBuilder;
+            final StringBuilder address = mAddressBuilder;
+            name.setLength(0);
+            address.setLength(0);
+
+            int i = mPos;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (c == ',' || c == ';') {
+                    i++;
+                    break;
+                } else if (c == '"') {
+                    i++;
+                    while (i < length) {
+                        c = text.charAt(i);
+                        if (c == '"') {
+                            i++;
+                            break;
+                        } else if (c == '\\') {
+                            if (i + 1 < length) {
+                                name.append(text.charAt(i + 1));
+                            }
+                            i += 2;
+                        } else {
+                            name.append(c);
+                            i++;
+                        }
+                    }
+                } else if (c == '(') {
+                    int level = 1;
+                    i++;
+                    while (i < length && level > 0) {
+                        c = text.charAt(i);
+                        if (c == ')') {
+                            level--;
+                        } else if (c == '(') {
+                            level++;
+                        } else if (c == '\\') {
+                            i++;
+                        }
+                        i++;
+                    }
+                } else if (c == '<') {
+                    i++;
+                    while (i < length) {
+                        c = text.charAt(i);
+                        i++;
+                        if (c == '>') {
+                            break;
+                        }
+                        address.append(c);
+                    }
+                } else if (c == ' ') {
+                    name.append('\0');
+                    i++;
+                } else {
+                    name.append(c);
+                    i++;
+                }
+            }
+            mPos = i;
+            crunch(name);
+        }
+
+        /**
+         * Drops the '\0's at the ends of the name and next to other spaces, and turns the
+         * others into spaces, like {@link Rfc822Tokenizer} does.
+         */
+        private static void crunch(StringBuilder sb) {
+            final int length = sb.length();
+            int out = 0;
+            for (int i = 0; i < length; i++) {
+                final char c = sb.charAt(i);
+                if (c == '\0') {
+                    if (out == 0 || i == length - 1 || sb.charAt(out - 1) == ' ') {
+                        continue;
+                    }
+                    final char next = sb.charAt(i + 1);
+                    if (next == ' ' || next == '\0') {
+                        continue;
+                    }
+                    sb.setCharAt(out++, ' ');
+                } else {
+                    sb.setCharAt(out++, c);
+                }
+            }
+            sb.setLength(out);
+        }
     }
 
     @Override
@@ -20,13 +20,12 @@ import com.google.common.annotations.VisibleForTesting;
 
 import android.graphics.Color;
 import android.text.Spannable;
-import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import android.text.style.BackgroundColorSpan;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -513,12 +512,7 @@ public class TextUtilities {
      */
     @VisibleForTesting
     public static String highlightTermsInHtml(String text, String query) {
-        try {
-            return highlightTerms(text, query, true).toString();
-        } catch (IOException e) {
-            // Can't happen, but we must catch this
-            return text;
-        }
+        return highlightTerms(text, query, true).toString();
     }
 
     /**
@@ -530,28 +524,174 @@ public class TextUtilities {
      * @return a CharSequence with the search terms highlighted
      */
     public static CharSequence highlightTermsInText(String text, String query) {
-        try {
-            return highlightTerms(text, query, false);
-        } catch (IOException e) {
-            // Can't happen, but we must catch this
-            return text;
+        return highlightTerms(text, query, false);
+    }
+
+    /**
+     * All the search terms of a query, compiled into an Aho-Corasick automaton so that every
+     * term is looked for in a single pass over the text. Terms are matched case insensitively.
+     * Instances are immutable, so they can be shared between threads.
+     */
+    @VisibleForTesting
+    static class SearchTermMatcher {
+        static final int ROOT = 0;
+        private static final int NONE = -1;
+
+        final String mQuery;
+        private final int mStateCount;
+        // The trie: every state but the root has exactly one parent, so the edge leading to a
+        // state is stored with the state itself, and the children of a state form a linked list.
+        private final char[] mLabel;
+        private final int[] mFirstChild;
+        private final int[] mNextSibling;
+        // The state for the longest proper suffix of this state that is also in the trie.
+        private final int[] mFail;
+        // The length of the longest term that ends at this state, or 0.
+        private final int[] mMatchLength;
+
+        SearchTermMatcher(String query) {
+            mQuery = query;
+
+            final ArrayList<String> terms = new ArrayList<String>();
+            int maxStates = 1;
+            if (query != null) {
+                final StringTokenizer st = new StringTokenizer(query);
+                while (st.hasMoreTokens()) {
+                    final String term = st.nextToken();
+                    terms.add(term);
+                    maxStates += term.length();
+                }
+            }
+            mLabel = new char[maxStates];
+            mFirstChild = new int[maxStates];
+            mNextSibling = new int[maxStates];
+            mFail = new int[maxStates];
+            mMatchLength = new int[maxStates];
+            Arrays.fill(mFirstChild, NONE);
+            Arrays.fill(mNextSibling, NONE);
+
+            int stateCount = 1;
+            for (String term : terms) {
+                int state = ROOT;
+                for (int i = 0; i < term.length(); i++) {
+                    final char c = Character.toLowerCase(term.charAt(i));
+                    int child = findChild(state, c);
+                    if (child == NONE) {
+                        child = stateCount++;
+                        mLabel[child] = c;
+                        mNextSibling[child] = mFirstChild[state];
+                        mFirstChild[state] = child;
+                    }
+                    state = child;
+                }
+                mMatchLength[state] = term.length();
+            }
+            mStateCount = stateCount;
+
+            // Compute the failure links breadth first, so that the link of a state's parent is
+            // always known before the state's own.
+            final int[] queue = new int[stateCount];
+            int head = 0;
+            int tail = 0;
+            for (int child = mFirstChild[ROOT]; child != NONE; child = mNextSibling[child]) {
+                mFail[child] = ROOT;
+                queue[tail++] = child;
+            }
+            while (head < tail) {
+                final int state = queue[head++];
+                for (int child = mFirstChild[state]; child != NONE; child = mNextSibling[child]) {
+                    final int fail = next(mFail[state], mLabel[child]);
+                    mFail[child] = fail;
+                    mMatchLength[child] = Math.max(mMatchLength[child], mMatchLength[fail]);
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        /**
+         * @return true if the query had no search terms
+         */
+        boolean isEmpty() {
+            return mStateCount == 1;
+        }
+
+        /**
+         * Advances the automaton by one character of the text.
+         * @param state the current state, initially {@link #ROOT}
+         * @param c the next character of the text, already lower cased
+         * @return the new state
+         */
+        int next(int state, char c) {
+            while (true) {
+                final int child = findChild(state, c);
+                if (child != NONE) {
+                    return child;
+                } else if (state == ROOT) {
+                    return ROOT;
+                }
+                state = mFail[state];
+            }
+        }
+
+        /**
+         * @return the length of the longest search term ending at the given state, or 0 if none
+         */
+        int getMatchLength(int state) {
+            return mMatchLength[state];
+        }
+
+        private int findChild(int state, char c) {
+            for (int child = mFirstChild[state]; child != NONE; child = mNextSibling[child]) {
+                if (mLabel[child] == c) {
+                    return child;
+                }
+            }
+            return NONE;
         }
     }
 
-    static class SearchTerm {
-        final String mTerm;
-        final String mTermLowerCase;
-        final int mLength;
-        int mMatchLength = 0;
-        int mMatchStart = -1;
-
-        SearchTerm(String term) {
-            mTerm = term;
-            mTermLowerCase = term.toLowerCase();
-            mLength = term.length();
+    /**
+     * The ranges of text to highlight, in order. Overlapping ranges are merged as they are added.
+     */
+    private static class HighlightRanges {
+        // Start (inclusive) and end (exclusive) of each range, one pair after the other
+        private int[] mBounds = new int[8];
+        private int mCount = 0;
+
+        /**
+         * Adds a range. The end of the range must not be before the end of the last range added.
+         */
+        void add(int start, int end) {
+            while (mCount > 0 && start < mBounds[mCount * 2 - 1]) {
+                mCount--;
+                start = Math.min(start, mBounds[mCount * 2]);
+            }
+            if (mCount * 2 == mBounds.length) {
+                mBounds = Arrays.copyOf(mBounds, mBounds.length * 2);
+            }
+            mBounds[mCount * 2] = start;
+            mBounds[mCount * 2 + 1] = end;
+            mCount++;
         }
     }
 
+    // The matcher for the most recent query; lists highlight many rows for the same query
+    private static volatile SearchTermMatcher sLastSearchTermMatcher;
+
+    @VisibleForTesting
+    static SearchTermMatcher getSearchTermMatcher(String query) {
+        SearchTermMatcher matcher = sLastSearchTermMatcher;
+        if (matcher == null || !TextUtils.equals(matcher.mQuery, query)) {
+            matcher = new SearchTermMatcher(query);
+            sLastSearchTermMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    private static final String HIGHLIGHT_HTML_START =
+            "<span style=\"background-color: " + HIGHLIGHT_COLOR_STRING + "\">";
+    private static final String HIGHLIGHT_HTML_END = "</span>";
+
     /**
      * Generate a version of the incoming text in which all search terms in a query are highlighted.
      * If the input is HTML, we return a StringBuilder with additional markup as required
@@ -561,159 +701,105 @@ public class TextUtilities {
      * @param query the query, which can contain multiple terms separated by whitespace
      * @param html whether or not the text to be processed is HTML
      * @return highlighted text
-     *
-     * @throws IOException as Appendable requires this
      */
-    public static CharSequence highlightTerms(String text, String query, boolean html)
-            throws IOException {
+    public static CharSequence highlightTerms(String text, String query, boolean html) {
         // Handle null and empty string
         if (TextUtils.isEmpty(text)) return "";
         final int length = text.length();
 
-        // Break up the query into search terms
-        ArrayList<SearchTerm> terms = new ArrayList<SearchTerm>();
-        if (query != null) {
-            StringTokenizer st = new StringTokenizer(query);
-            while (st.hasMoreTokens()) {
-                terms.add(new SearchTerm(st.nextToken()));
+        final SearchTermMatcher matcher = getSearchTermMatcher(query);
+        final HighlightRanges ranges = new HighlightRanges();
+        if (!matcher.isEmpty()) {
+            findHighlightRanges(text, html, matcher, ranges);
+        }
+
+        if (html) {
+            final StringBuilder sb = new StringBuilder(length + ranges.mCount
+                    * (HIGHLIGHT_HTML_START.length() + HIGHLIGHT_HTML_END.length()));
+            int lastOut = 0;
+            for (int i = 0; i < ranges.mCount; i++) {
+                final int start = ranges.mBounds[i * 2];
+                final int end = ranges.mBounds[i * 2 + 1];
+                sb.append(text, lastOut, start);
+                sb.append(HIGHLIGHT_HTML_START).append(text, start, end).append(HIGHLIGHT_HTML_END);
+                lastOut = end;
+            }
+            sb.append(text, lastOut, length);
+            return sb;
+        } else {
+            final SpannableStringBuilder sb = new SpannableStringBuilder(text);
+            for (int i = 0; i < ranges.mCount; i++) {
+                sb.setSpan(new BackgroundColorSpan(HIGHLIGHT_COLOR_INT), ranges.mBounds[i * 2],
+                        ranges.mBounds[i * 2 + 1], Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
+            return sb;
         }
+    }
 
-        // Our appendable depends on whether we're building HTML text (for webview) or spannable
-        // text (for UI)
-        final Appendable sb = html ? new StringBuilder() : new SpannableStringBuilder();
+    /**
+     * Finds the search term matches in the text. For HTML, matches are only looked for in the
+     * "body" text: tags, and the content of the tags in {@link #STRIP_TAGS}, are skipped, and a
+     * match never spans a tag.
+     */
+    private static void findHighlightRanges(String text, boolean html, SearchTermMatcher matcher,
+            HighlightRanges ranges) {
+        final int length = text.length();
         // Indicates whether we're in the middle of an HTML tag
         boolean inTag = false;
-        // The position of the last input character copied to output
-        int lastOut = -1;
-
-        // Walk through the text until we're done with the input
-        // Just copy any HTML tags directly into the output; search for terms in the remaining text
+        int state = SearchTermMatcher.ROOT;
         for (int i = 0; i < length; i++) {
-            char chr = text.charAt(i);
+            final char chr = text.charAt(i);
             if (html) {
-                if (!inTag && (chr == '<')) {
+                if (inTag) {
+                    if (chr == '>') {
+                        inTag = false;
+                    }
+                    continue;
+                } else if (chr == '<' && i < (length - 1)) {
                     // Find tags; they will begin with <! or !- or </ or <letter
-                    if (i < (length - 1)) {
-                        char peek = text.charAt(i + 1);
-                        if (peek == '!' || peek == '-' || peek == '/' || Character.isLetter(peek)) {
-                            inTag = true;
-                            // Skip content of title, script, style and applet tags
-                            if (i < (length - (MAX_STRIP_TAG_LENGTH + 2))) {
-                                String tag = text.substring(i + 1, i + MAX_STRIP_TAG_LENGTH + 1);
-                                String tagLowerCase = tag.toLowerCase();
-                                boolean stripContent = false;
-                                for (String stripTag: STRIP_TAGS) {
-                                    if (tagLowerCase.startsWith(stripTag)) {
-                                        stripContent = true;
-                                        tag = tag.substring(0, stripTag.length());
-                                        break;
-                                    }
-                                }
-                                if (stripContent) {
-                                    // Look for the end of this tag
-                                    int endTagPosition = findTagEnd(text, tag, i);
-                                    if (endTagPosition < 0) {
-                                        sb.append(text.substring(i));
-                                        break;
-                                    } else {
-                                        sb.append(text.substring(i, endTagPosition - 1));
-                                        i = endTagPosition - 1;
-                                        chr = text.charAt(i);
-                                    }
+                    final char peek = text.charAt(i + 1);
+                    if (peek == '!' || peek == '-' || peek == '/' || Character.isLetter(peek)) {
+                        inTag = true;
+                        state = SearchTermMatcher.ROOT;
+                        // Skip content of title, script, style and applet tags
+                        if (i < (length - (MAX_STRIP_TAG_LENGTH + 2))) {
+                            final String stripTag = findStripTag(text, i + 1);
+                            if (stripTag != null) {
+                                // Look for the end of this tag
+                                final int endTagPosition = findTagEnd(text,
+                                        text.substring(i + 1, i + 1 + stripTag.length()), i);
+                                if (endTagPosition < 0) {
+                                    return;
                                 }
+                                i = endTagPosition - 1;
                             }
                         }
+                        continue;
                     }
-                } else if (inTag && (chr == '>')) {
-                    inTag = false;
-                }
-
-                if (inTag) {
-                    sb.append(chr);
-                    continue;
                 }
             }
 
             // After all that, we've got some "body" text
-            char chrLowerCase = Character.toLowerCase(chr);
-            // Whether or not the current character should be appended to the output; we inhibit
-            // this while any search terms match
-            boolean appendNow = true;
-            // Look through search terms for matches
-            for (SearchTerm t: terms) {
-                if (chrLowerCase == t.mTermLowerCase.charAt(t.mMatchLength)) {
-                    if (t.mMatchLength++ == 0) {
-                        // New match start
-                        t.mMatchStart = i;
-                    }
-                    if (t.mMatchLength == t.mLength) {
-                        String matchText = text.substring(t.mMatchStart, t.mMatchStart + t.mLength);
-                        // Completed match; add highlight and reset term
-                        if (t.mMatchStart <= lastOut) {
-                            matchText = text.substring(lastOut + 1, i + 1);
-                        }
-                        /*else*/
-                        if (matchText.length() == 0) {} else
-                        if (html) {
-                            sb.append("<span style=\"background-color: " + HIGHLIGHT_COLOR_STRING +
-                                    "\">");
-                            sb.append(matchText);
-                            sb.append("</span>");
-                        } else {
-                            SpannableString highlightSpan = new SpannableString(matchText);
-                            highlightSpan.setSpan(new BackgroundColorSpan(HIGHLIGHT_COLOR_INT), 0,
-                                    highlightSpan.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                            sb.append(highlightSpan);
-                        }
-                        lastOut = t.mMatchStart + t.mLength - 1;
-                        t.mMatchLength = 0;
-                        t.mMatchStart = -1;
-                    }
-                    appendNow = false;
-                } else {
-                    if (t.mMatchStart >= 0) {
-                        // We're no longer matching; check for other matches in progress
-                        int leastOtherStart = -1;
-                        for (SearchTerm ot: terms) {
-                            // Save away the lowest match start for other search terms
-                            if ((ot != t) && (ot.mMatchStart >= 0) && ((leastOtherStart < 0) ||
-                                    (ot.mMatchStart <= leastOtherStart))) {
-                                leastOtherStart = ot.mMatchStart;
-                            }
-                        }
-                        int matchEnd = t.mMatchStart + t.mMatchLength;
-                        if (leastOtherStart < 0 || leastOtherStart > matchEnd) {
-                            // Append the whole thing
-                            if (t.mMatchStart > lastOut) {
-                                sb.append(text.substring(t.mMatchStart, matchEnd));
-                                lastOut = matchEnd;
-                            }
-                        } else if (leastOtherStart == t.mMatchStart) {
-                            // Ok to append the current char
-                        } else if (leastOtherStart < t.mMatchStart) {
-                            // We're already covered by another search term, so don't append
-                            appendNow = false;
-                        } else if (t.mMatchStart > lastOut) {
-                            // Append the piece of our term that's not already covered
-                            sb.append(text.substring(t.mMatchStart, leastOtherStart));
-                            lastOut = leastOtherStart;
-                        }
-                    }
-                    // Reset this term
-                    t.mMatchLength = 0;
-                    t.mMatchStart = -1;
-                }
+            state = matcher.next(state, Character.toLowerCase(chr));
+            final int matchLength = matcher.getMatchLength(state);
+            if (matchLength > 0) {
+                ranges.add(i + 1 - matchLength, i + 1);
             }
+        }
+    }
 
-            if (appendNow) {
-                sb.append(chr);
-                lastOut = i;
+    /**
+     * @return the tag of {@link #STRIP_TAGS} that the text at the given position starts with,
+     * ignoring case, or null if none
+     */
+    private static String findStripTag(String text, int pos) {
+        for (String stripTag : STRIP_TAGS) {
+            if (text.regionMatches(true, pos, stripTag, 0, stripTag.length())) {
+                return stripTag;
             }
         }
-
-        return (CharSequence)sb;
-   }
+        return null;
+    }
 
     /**
      * Determine whether two Strings (either of which might be null) are the same; this is true
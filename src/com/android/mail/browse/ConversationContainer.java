@@ -76,10 +76,6 @@ import java.util.Set;
 public class ConversationContainer extends ViewGroup implements ScrollListener {
     private static final String TAG = ConversationViewFragment.LAYOUT_TAG;
 
-    private static final int[] BOTTOM_LAYER_VIEW_IDS = {
-        R.id.conversation_webview
-    };
-
     private static final int[] TOP_LAYER_VIEW_IDS = {
         R.id.conversation_topmost_overlay
     };
@@ -251,17 +247,37 @@ public class ConversationContainer extends ViewGroup implements ScrollListener {
     protected void onFinishInflate() {
         super.onFinishInflate();
 
-        mWebView = (ConversationWebView) findViewById(R.id.conversation_webview);
-        mWebView.addScrollListener(this);
-
-        for (int id : BOTTOM_LAYER_VIEW_IDS) {
-            mNonScrollingChildren.add(findViewById(id));
-        }
         for (int id : TOP_LAYER_VIEW_IDS) {
             mNonScrollingChildren.add(findViewById(id));
         }
     }
 
+    /**
+     * Adds the WebView as the bottom layer, below all overlay views. It is not part of the
+     * layout because it comes from {@link ConversationWebViewPool}.
+     */
+    public void setWebView(ConversationWebView webView) {
+        mWebView = webView;
+        mWebView.addScrollListener(this);
+        addView(mWebView, 0, new MarginLayoutParams(LayoutParams.MATCH_PARENT,
+                LayoutParams.MATCH_PARENT));
+        mNonScrollingChildren.add(0, mWebView);
+    }
+
+    /**
+     * Removes the WebView added by {@link #setWebView(ConversationWebView)}, so it can be
+     * returned to {@link ConversationWebViewPool}. The container must not be used any more.
+     */
+    public void removeWebView() {
+        if (mWebView == null) {
+            return;
+        }
+        mWebView.removeScrollListener(this);
+        mNonScrollingChildren.remove(mWebView);
+        removeView(mWebView);
+        // keep the reference: a late layout pass may still read the scale
+    }
+
     public void setupSnapHeader() {
         mSnapHeader = (SnapHeader) findViewById(R.id.snap_header);
         mSnapHeader.setSnappy();
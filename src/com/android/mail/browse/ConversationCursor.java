@@ -45,6 +45,7 @@ import com.android.mail.providers.FolderList;
 import com.android.mail.providers.UIProvider;
 import com.android.mail.providers.UIProvider.ConversationListQueryParameters;
 import com.android.mail.providers.UIProvider.ConversationOperations;
+import com.android.mail.providers.UIProvider.CursorExtraKeys;
 import com.android.mail.ui.ConversationListFragment;
 import com.android.mail.utils.DrawIdler;
 import com.android.mail.utils.LogUtils;
@@ -101,6 +102,12 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
 
     private static final boolean DEBUG_DUPLICATE_KEYS = true;
 
+    /** The number of conversations in each page of a list that is loaded page by page */
+    private static final int PAGE_SIZE =
+            Integer.parseInt(ConversationListQueryParameters.DEFAULT_LIMIT);
+    /** The next page is loaded when the UI gets this many conversations from the end */
+    private static final int PAGE_PREFETCH_ROWS = 10;
+
     /** The resolver for the cursor instantiator's context */
     private final ContentResolver mResolver;
 
@@ -125,6 +132,10 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
      * provider)
      */
     private RefreshTask mRefreshTask;
+    /** The task loading the next page of the list, if it is loaded page by page */
+    private PageTask mPageTask;
+    /** Conversations to refresh on top of those loaded, in place of a page that failed */
+    private int mRefreshExtraRows;
     /** Set when we've sent refreshReady() to listeners */
     private boolean mRefreshReady = false;
     /** Set when we've sent refreshRequired() to listeners */
@@ -208,16 +219,19 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
             try {
                 // Create new ConversationCursor
                 LogUtils.d(LOG_TAG, "Create: initial creation");
-                setCursor(doQuery(mUseInitialConversationLimit));
+                setCursor(doQuery(mUseInitialConversationLimit ? PAGE_SIZE : 0));
             } finally {
-                // If we used a limit, queue up a query without limit
+                // If we used a limit, queue up a query without limit, unless the provider lets us
+                // load the rest of the list page by page as the UI gets to it
                 if (mUseInitialConversationLimit) {
                     mUseInitialConversationLimit = false;
-                    // We want to notify about this change to allow the UI to requery.  We don't
-                    // want to directly call refresh() here as this will start an AyncTask which
-                    // is normally only run after the cursor is in the "refresh required"
-                    // state
-                    underlyingChanged();
+                    if (mUnderlyingCursor == null || mUnderlyingCursor.getPages() == null) {
+                        // We want to notify about this change to allow the UI to requery.  We
+                        // don't want to directly call refresh() here as this will start an
+                        // AyncTask which is normally only run after the cursor is in the
+                        // "refresh required" state
+                        underlyingChanged();
+                    }
                 }
             }
         }
@@ -390,78 +404,124 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
             }
 
             final long start = SystemClock.uptimeMillis();
-            final Map<String, Integer> uriPositionMap;
-            final Map<Long, Integer> idPositionMap;
-            final UnderlyingRowData[] cache;
-            final int count;
             Utils.traceBeginSection("blockingCaching");
-            if (super.moveToFirst()) {
-                count = super.getCount();
-                cache = new UnderlyingRowData[count];
-                int i = 0;
+            final int count = super.getCount();
+            final Map<String, Integer> uriPositionMap = Maps.newHashMapWithExpectedSize(count);
+            final Map<Long, Integer> idPositionMap = Maps.newHashMapWithExpectedSize(count);
+            final List<UnderlyingRowData> rowCache = Lists.newArrayListWithCapacity(count);
+            readRows(0, count, uriPositionMap, idPositionMap, rowCache);
+            mConversationUriPositionMap = Collections.unmodifiableMap(uriPositionMap);
+            mConversationIdPositionMap = Collections.unmodifiableMap(idPositionMap);
 
-                uriPositionMap = Maps.newHashMapWithExpectedSize(count);
-                idPositionMap = Maps.newHashMapWithExpectedSize(count);
+            mRowCache = Collections.unmodifiableList(rowCache);
+            final long end = SystemClock.uptimeMillis();
+            LogUtils.i(LOG_TAG, "*** ConversationCursor pre-loading took %sms n=%s", (end-start),
+                    count);
 
-                do {
-                    final String innerUriString;
-                    final long convId;
+            Utils.traceEndSection();
 
-                    innerUriString = super.getString(URI_COLUMN_INDEX);
-                    convId = super.getLong(UIProvider.CONVERSATION_ID_COLUMN);
+            // Later, when the idler signals that the activity is idle, start a task to cache
+            // conversations in pieces.
+            mCachePos = 0;
+        }
 
-                    if (DEBUG_DUPLICATE_KEYS) {
-                        if (uriPositionMap.containsKey(innerUriString)) {
-                            LogUtils.e(LOG_TAG, "Inserting duplicate conversation uri key: %s. " +
-                                    "Cursor position: %d, iteration: %d map position: %d",
-                                    innerUriString, getPosition(), i,
-                                    uriPositionMap.get(innerUriString));
-                        }
-                        if (idPositionMap.containsKey(convId)) {
-                            LogUtils.e(LOG_TAG, "Inserting duplicate conversation id key: %d" +
-                                    "Cursor position: %d, iteration: %d map position: %d",
-                                    convId, getPosition(), i, idPositionMap.get(convId));
-                        }
-                    }
+        /**
+         * Appends a page to the pages of the previous wrapper, and creates a wrapper of them. Only
+         * the rows of the new page are read; the others, and the conversations cached for them,
+         * are taken from the previous wrapper. The previous wrapper must not be used or closed
+         * afterwards, since its pages now belong to this one.
+         */
+        public UnderlyingCursorWrapper(UnderlyingCursorWrapper previous, Cursor page,
+                boolean cachingEnabled) {
+            super(previous.getPages(), previous.getLock());
 
-                    uriPositionMap.put(innerUriString, i);
-                    idPositionMap.put(convId, i);
+            mCachingEnabled = cachingEnabled;
+            // The previous wrapper was put in place already, which stopped it from tracking
+            // updates, so there's no need for this one to track them
+            mCursorUpdateObserver =
+                    new NewCursorUpdateObserver(new Handler(Looper.getMainLooper()));
 
-                    cache[i] = new UnderlyingRowData(
-                            innerUriString,
-                            null /* conversation */);
-                } while (super.moveToPosition(++i));
+            previous.stopCaching();
+            previous.disableUpdateNotifications();
 
-                if (uriPositionMap.size() != count || idPositionMap.size() != count) {
-                    if (DEBUG_DUPLICATE_KEYS)  {
-                        throw new IllegalStateException("Unexpected map sizes: cursorN=" + count
-                                + " uriN=" + uriPositionMap.size() + " idN="
-                                + idPositionMap.size());
-                    } else {
-                        LogUtils.e(LOG_TAG, "Unexpected map sizes.  Cursor size: %d, " +
-                                "uri position map size: %d, id position map size: %d", count,
-                                uriPositionMap.size(), idPositionMap.size());
-                    }
-                }
-            } else {
-                count = 0;
-                cache = new UnderlyingRowData[0];
-                uriPositionMap = Maps.newHashMap();
-                idPositionMap = Maps.newHashMap();
+            final int previousCount = previous.mRowCache.size();
+            final Map<String, Integer> uriPositionMap;
+            final Map<Long, Integer> idPositionMap;
+            final List<UnderlyingRowData> rowCache;
+            // A cancelled caching task of the previous wrapper may still be reading the pages
+            synchronized (getLock()) {
+                getPages().append(page, PAGE_SIZE);
+                final int count = super.getCount();
+                uriPositionMap = Maps.newHashMapWithExpectedSize(count);
+                uriPositionMap.putAll(previous.mConversationUriPositionMap);
+                idPositionMap = Maps.newHashMapWithExpectedSize(count);
+                idPositionMap.putAll(previous.mConversationIdPositionMap);
+                rowCache = Lists.newArrayListWithCapacity(count);
+                rowCache.addAll(previous.mRowCache);
+                readRows(previousCount, count, uriPositionMap, idPositionMap, rowCache);
             }
             mConversationUriPositionMap = Collections.unmodifiableMap(uriPositionMap);
             mConversationIdPositionMap = Collections.unmodifiableMap(idPositionMap);
+            mRowCache = Collections.unmodifiableList(rowCache);
 
-            mRowCache = Collections.unmodifiableList(Arrays.asList(cache));
-            final long end = SystemClock.uptimeMillis();
-            LogUtils.i(LOG_TAG, "*** ConversationCursor pre-loading took %sms n=%s", (end-start),
-                    count);
+            mCachePos = previous.mCachePos;
+            mDrawState = previous.mDrawState;
+        }
 
-            Utils.traceEndSection();
+        /**
+         * Reads the uris and ids of the given rows into the maps, and adds empty row data for
+         * them to the row cache.
+         */
+        private void readRows(int start, int count, Map<String, Integer> uriPositionMap,
+                Map<Long, Integer> idPositionMap, List<UnderlyingRowData> rowCache) {
+            for (int i = start; i < count && super.moveToPosition(i); i++) {
+                final String innerUriString;
+                final long convId;
+
+                innerUriString = super.getString(URI_COLUMN_INDEX);
+                convId = super.getLong(UIProvider.CONVERSATION_ID_COLUMN);
+
+                if (DEBUG_DUPLICATE_KEYS) {
+                    if (uriPositionMap.containsKey(innerUriString)) {
+                        LogUtils.e(LOG_TAG, "Inserting duplicate conversation uri key: %s. " +
+                                "Cursor position: %d, iteration: %d map position: %d",
+                                innerUriString, getPosition(), i,
+                                uriPositionMap.get(innerUriString));
+                    }
+                    if (idPositionMap.containsKey(convId)) {
+                        LogUtils.e(LOG_TAG, "Inserting duplicate conversation id key: %d" +
+                                "Cursor position: %d, iteration: %d map position: %d",
+                                convId, getPosition(), i, idPositionMap.get(convId));
+                    }
+                }
 
-            // Later, when the idler signals that the activity is idle, start a task to cache
-            // conversations in pieces.
-            mCachePos = 0;
+                uriPositionMap.put(innerUriString, i);
+                idPositionMap.put(convId, i);
+
+                rowCache.add(new UnderlyingRowData(
+                        innerUriString,
+                        null /* conversation */));
+            }
+
+            if (uriPositionMap.size() != count || idPositionMap.size() != count) {
+                if (DEBUG_DUPLICATE_KEYS)  {
+                    throw new IllegalStateException("Unexpected map sizes: cursorN=" + count
+                            + " uriN=" + uriPositionMap.size() + " idN="
+                            + idPositionMap.size());
+                } else {
+                    LogUtils.e(LOG_TAG, "Unexpected map sizes.  Cursor size: %d, " +
+                            "uri position map size: %d, id position map size: %d", count,
+                            uriPositionMap.size(), idPositionMap.size());
+                }
+            }
+        }
+
+        /**
+         * @return the pages of the list, if it is loaded page by page, or null
+         */
+        public PagedCursor getPages() {
+            final Cursor cursor = getWrappedCursor();
+            return cursor instanceof PagedCursor ? (PagedCursor) cursor : null;
         }
 
         /**
@@ -496,6 +556,12 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
             mCachingEnabled = false;
         }
 
+        private void resumeCachingIfIdle() {
+            if (mDrawState == DrawIdler.STATE_IDLE) {
+                resumeCaching();
+            }
+        }
+
         public boolean contains(String uri) {
             return mConversationUriPositionMap.containsKey(uri);
         }
@@ -578,7 +644,10 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
      * Runnable that performs the query on the underlying provider
      */
     private class RefreshTask extends AsyncTask<Void, Void, UnderlyingCursorWrapper> {
-        private RefreshTask() {
+        private final int mLimit;
+
+        private RefreshTask(int limit) {
+            mLimit = limit;
         }
 
         @Override
@@ -587,7 +656,7 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
                 LogUtils.i(LOG_TAG, "[Start refresh of %s: %d]", mName, hashCode());
             }
             // Get new data
-            final UnderlyingCursorWrapper result = doQuery(false);
+            final UnderlyingCursorWrapper result = doQuery(mLimit);
             // Make sure window is full
             result.getCount();
             return result;
@@ -627,11 +696,63 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
         }
     }
 
-    private UnderlyingCursorWrapper doQuery(boolean withLimit) {
+    /**
+     * Runnable that queries the page of conversations after the loaded ones, for a list that is
+     * loaded page by page
+     */
+    private class PageTask extends AsyncTask<Void, Void, Cursor> {
+        private final UnderlyingCursorWrapper mBase;
+        private final long mOrderKeyBefore;
+
+        private PageTask(UnderlyingCursorWrapper base, long orderKeyBefore) {
+            mBase = base;
+            mOrderKeyBefore = orderKeyBefore;
+        }
+
+        @Override
+        protected Cursor doInBackground(Void... params) {
+            final Uri uri = qUri.buildUpon()
+                    .appendQueryParameter(ConversationListQueryParameters.LIMIT,
+                            Integer.toString(PAGE_SIZE))
+                    .appendQueryParameter(ConversationListQueryParameters.ORDER_KEY_BEFORE,
+                            Long.toString(mOrderKeyBefore))
+                    .build();
+            Utils.traceBeginSection("queryPage");
+            final Cursor page = mResolver.query(uri, qProjection, null, null, null);
+            Utils.traceEndSection();
+            if (page == null) {
+                LogUtils.w(LOG_TAG, "PageTask returning null cursor, uri: " + uri);
+            } else {
+                // Make sure window is full
+                page.getCount();
+            }
+            return page;
+        }
+
+        @Override
+        protected void onPostExecute(Cursor page) {
+            mPageTask = null;
+            if (page != null && !appendPage(mBase, page)) {
+                page.close();
+            }
+        }
+
+        @Override
+        protected void onCancelled(Cursor page) {
+            if (page != null) {
+                page.close();
+            }
+        }
+    }
+
+    /**
+     * @param limit the number of conversations to query, or 0 for all of them
+     */
+    private UnderlyingCursorWrapper doQuery(int limit) {
         Uri uri = qUri;
-        if (withLimit) {
+        if (limit > 0) {
             uri = uri.buildUpon().appendQueryParameter(ConversationListQueryParameters.LIMIT,
-                    ConversationListQueryParameters.DEFAULT_LIMIT).build();
+                    Integer.toString(limit)).build();
         }
         long time = System.currentTimeMillis();
 
@@ -647,9 +768,101 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
         }
         System.gc();
 
+        if (limit > 0 && result != null) {
+            final Bundle extras = result.getExtras();
+            if (extras != null && extras.getBoolean(CursorExtraKeys.EXTRA_ORDER_KEY_PAGING)) {
+                return new UnderlyingCursorWrapper(new PagedCursor(result, limit),
+                        mCachingEnabled);
+            }
+        }
         return new UnderlyingCursorWrapper(result, mCachingEnabled);
     }
 
+    /**
+     * Starts loading the next page of a list that is loaded page by page, if the UI is getting
+     * close to the end of the loaded conversations. Must be called on the UI thread.
+     */
+    private void loadNextPageIfNeeded() {
+        if (mUnderlyingCursor == null || mPageTask != null || mPaused || mDeferSync
+                || mRefreshRequired || mRefreshReady || mRefreshTask != null) {
+            return;
+        }
+        final PagedCursor pages = mUnderlyingCursor.getPages();
+        if (pages == null || !pages.hasMorePages()
+                || mPosition < getCount() - PAGE_PREFETCH_ROWS) {
+            return;
+        }
+        mPageTask = new PageTask(mUnderlyingCursor, pages.getLastOrderKey());
+        mPageTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Appends a page to the underlying cursor, if it is still the one the page follows, and
+     * notifies the listeners. Must be called on the UI thread.
+     *
+     * @return whether the page was appended; if not, it is up to the caller to close it
+     */
+    private boolean appendPage(UnderlyingCursorWrapper base, Cursor page) {
+        synchronized (mCacheMapLock) {
+            if (base != mUnderlyingCursor || base.isClosed() || mPaused || mDeferSync
+                    || mRefreshRequired || mRefreshReady || mRefreshTask != null) {
+                // The UI will ask for the page again when it gets to the end of the list
+                return false;
+            }
+            if (containsLoadedConversation(base, page)) {
+                // A loaded conversation moved down since its page was queried. Refresh the
+                // loaded conversations and one more page instead.
+                LogUtils.i(LOG_TAG, "Page overlaps the loaded conversations of %s", mName);
+                mRefreshExtraRows = PAGE_SIZE;
+                underlyingChanged();
+                return false;
+            }
+
+            // Observers have to leave the pages before the new page joins them
+            if (mCursorObserverRegistered) {
+                base.unregisterContentObserver(mCursorObserver);
+            }
+            final UnderlyingCursorWrapper grown =
+                    new UnderlyingCursorWrapper(base, page, mCachingEnabled);
+            if (mCursorObserverRegistered) {
+                grown.registerContentObserver(mCursorObserver);
+            }
+            mUnderlyingCursor = grown;
+            recalibratePosition();
+            grown.resumeCachingIfIdle();
+            LogUtils.i(LOG_TAG, "Appended page of %d conversations to %s, n=%d",
+                    page.getCount(), mName, grown.getCount());
+        }
+        notifyDataChanged();
+        return true;
+    }
+
+    private static boolean containsLoadedConversation(UnderlyingCursorWrapper loaded,
+            Cursor page) {
+        // The page isn't shared with any other cursor yet, so it can be moved here
+        for (boolean more = page.moveToFirst(); more; more = page.moveToNext()) {
+            if (loaded.contains(page.getString(URI_COLUMN_INDEX))
+                    || loaded.getPosition(page.getLong(UIProvider.CONVERSATION_ID_COLUMN)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of conversations to refresh: those loaded so far if the list is loaded
+     *     page by page, or 0 for all of them
+     */
+    private int getRefreshLimit() {
+        final PagedCursor pages = mUnderlyingCursor != null ? mUnderlyingCursor.getPages() : null;
+        final int extraRows = mRefreshExtraRows;
+        mRefreshExtraRows = 0;
+        if (pages == null) {
+            return 0;
+        }
+        return Math.max(pages.getCount(), PAGE_SIZE) + extraRows;
+    }
+
     static boolean offUiThread() {
         return Looper.getMainLooper().getThread() != Thread.currentThread();
     }
@@ -776,7 +989,91 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
             // The conversation wasn't found in the underlying cursor, return the underlying result.
             return underlyingPosition;
         }
+        return toConversationPosition(underlyingPosition, true /* checkDeleted */);
+    }
+
+    /**
+     * Returns the conversations at the given range of positions, clamped to the cursor, leaving
+     * out those that are being deleted. The position of the cursor is restored afterwards. Like
+     * every other move of this cursor, this must happen on the UI thread, which the list adapter
+     * also reads the cursor on.
+     *
+     * @param first the position of the first conversation
+     * @param last the position of the last conversation, inclusive
+     */
+    public List<Conversation> getConversations(int first, int last) {
+        if (Looper.getMainLooper() != Looper.myLooper()) {
+            LogUtils.wtf(LOG_TAG, "getConversations() called off the main thread");
+        }
+        final int start = Math.max(first, 0);
+        final int end = Math.min(last + 1, getCount());
+        final List<Conversation> conversations =
+                Lists.newArrayListWithCapacity(Math.max(end - start, 0));
+        final int position = getPosition();
+        try {
+            for (int i = start; i < end && moveToPosition(i); i++) {
+                conversations.add(getConversation());
+            }
+        } finally {
+            moveToPosition(position);
+        }
+        return conversations;
+    }
 
+    /**
+     * Returns the position, in the ConversationCursor, of the first conversation whose order key
+     * is less than or equal to the given one: where a conversation with that order key is, or
+     * would be if it hadn't been deleted or moved. Returns {@link #getCount()} if there is no such
+     * conversation. The conversation list is binary searched by order key, so this only works if
+     * the cursor sets {@link CursorExtraKeys#EXTRA_ORDER_KEY_PAGING}, which means that the list
+     * is ordered by descending order key. Otherwise returns -1. Must be called on the UI thread.
+     */
+    public int getPositionForOrderKey(long orderKey) {
+        final int underlyingPosition = findPositionForOrderKey(mUnderlyingCursor, orderKey);
+        if (underlyingPosition < 0) {
+            return -1;
+        }
+        // The conversations before this one that aren't deleted come before it in this cursor,
+        // and if it is deleted itself, the first one after it that isn't takes its place
+        return toConversationPosition(underlyingPosition, false /* checkDeleted */);
+    }
+
+    /**
+     * Binary searches a conversation list by order key, restoring its position afterwards.
+     *
+     * @return the position of the first conversation whose order key is less than or equal to
+     *     the given one, the count if there is none, or -1 if the cursor doesn't set
+     *     {@link CursorExtraKeys#EXTRA_ORDER_KEY_PAGING}
+     */
+    @VisibleForTesting
+    static int findPositionForOrderKey(Cursor cursor, long orderKey) {
+        final Bundle extras = cursor.getExtras();
+        if (extras == null || !extras.getBoolean(CursorExtraKeys.EXTRA_ORDER_KEY_PAGING)) {
+            return -1;
+        }
+        final int savedPosition = cursor.getPosition();
+        int low = 0;
+        int high = cursor.getCount();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            cursor.moveToPosition(mid);
+            if (cursor.getLong(UIProvider.CONVERSATION_ORDER_KEY_COLUMN) > orderKey) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        cursor.moveToPosition(savedPosition);
+        return low;
+    }
+
+    /**
+     * Converts a position in the underlying cursor to one in the ConversationCursor, by taking
+     * the deleted items before it into account.
+     *
+     * @param checkDeleted whether to return -1 if the item at the position was deleted
+     */
+    private int toConversationPosition(int underlyingPosition, boolean checkDeleted) {
         // Walk through each of the deleted items.  If the deleted item is before the underlying
         // position, decrement the position
         synchronized (mCacheMapLock) {
@@ -791,7 +1088,7 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
                     // provider uris, we need to make sure that this also returns these uris
                     final String conversationUri = entry.getKey();
                     final int deletedItemPosition = mUnderlyingCursor.getPosition(conversationUri);
-                    if (deletedItemPosition == underlyingPosition) {
+                    if (checkDeleted && deletedItemPosition == underlyingPosition) {
                         // The requested items has been deleted.
                         return -1;
                     }
@@ -1101,7 +1398,7 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
             if (mUnderlyingCursor != null) {
                 mUnderlyingCursor.stopCaching();
             }
-            mRefreshTask = new RefreshTask();
+            mRefreshTask = new RefreshTask(getRefreshLimit());
             mRefreshTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
         }
         return true;
@@ -1377,6 +1674,7 @@ public final class ConversationCursor implements Cursor, ConversationCursorOpera
      */
     public void notifyUIPositionChange() {
         mUnderlyingCursor.notifyConversationUIPositionChange();
+        loadNextPageIfNeeded();
     }
 
     private static void putInValues(ContentValues dest, String key, Object value) {
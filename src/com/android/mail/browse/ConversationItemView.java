@@ -397,6 +397,20 @@ public class ConversationItemView extends View
         Utils.traceEndSection();
     }
 
+    /**
+     * Loads the bitmaps, colors and dimensions shared by all conversation rows, along with those
+     * used to format senders. The first row would otherwise load them while binding. This is safe
+     * to call from a background thread, and does nothing if the resources are already loaded.
+     *
+     * @param context the application context
+     */
+    public static void warmUpResources(Context context) {
+        Utils.traceBeginSection("CIV warm up resources");
+        getItemViewResources(context);
+        SendersView.warmUpResources(context);
+        Utils.traceEndSection();
+    }
+
     private static synchronized void getItemViewResources(Context context) {
         if (sConfigurationChangedReceiver == null) {
             sConfigurationChangedReceiver = new BroadcastReceiver() {
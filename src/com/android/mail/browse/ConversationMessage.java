@@ -49,6 +49,10 @@ public final class ConversationMessage extends Message {
 
     private transient ConversationController mController;
 
+    // Whether the provider left out the body, see MessageCursor#areBodiesOmitted()
+    private transient boolean mBodyChecked;
+    private transient boolean mBodyPending;
+
     private ConversationMessage(Cursor cursor) {
         super(cursor);
     }
@@ -89,6 +93,34 @@ public final class ConversationMessage extends Message {
         return hash;
     }
 
+    /**
+     * Called by {@link MessageCursor} with whether the provider may have left out the bodies of
+     * its messages. A message without any body then has a pending body.
+     */
+    void checkBodyOmitted(boolean bodiesOmitted) {
+        if (!mBodyChecked) {
+            mBodyChecked = true;
+            mBodyPending = bodiesOmitted && bodyHtml == null && bodyText == null;
+        }
+    }
+
+    /**
+     * Returns true if the provider left out this message's body, and it has not been loaded yet.
+     * See {@link com.android.mail.providers.UIProvider#LAZY_BODIES_QUERY_PARAMETER}.
+     */
+    public boolean isBodyPending() {
+        return mBodyPending;
+    }
+
+    /**
+     * Sets the body that was loaded for a message whose body was pending.
+     */
+    void setLoadedBody(String html, String text) {
+        bodyHtml = html;
+        bodyText = text;
+        mBodyPending = false;
+    }
+
     public boolean isConversationStarred() {
         final MessageCursor c = mController.getMessageCursor();
         return c != null && c.isConversationStarred();
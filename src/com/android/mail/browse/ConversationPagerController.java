@@ -95,6 +95,8 @@ public class ConversationPagerController {
         mPager = (ViewPager) activity.findViewById(R.id.conversation_pager);
         mActivityController = controller;
         setupPageMargin(activity.getActivityContext());
+        // Have WebViews ready before the first conversation is opened
+        ConversationWebViewPool.prewarm(activity.getActivityContext());
     }
 
     /**
@@ -148,6 +150,8 @@ public class ConversationPagerController {
             }
         }
 
+        // Refill the pool for the neighbors of the initial conversation
+        ConversationWebViewPool.prewarm(mPager.getContext());
         mPagerAdapter = new ConversationPagerAdapter(mPager.getContext(), mFragmentManager,
                 account, folder, initialConversation);
         mPagerAdapter.setSingletonMode(ENABLE_SINGLETON_INITIAL_LOAD);
@@ -227,6 +231,7 @@ public class ConversationPagerController {
     public void onDestroy() {
         // need to release resources before a configuration change kills the activity and controller
         cleanup();
+        ConversationWebViewPool.cancelPrewarm();
     }
 
     private void cleanup() {
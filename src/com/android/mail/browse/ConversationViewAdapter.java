@@ -47,10 +47,12 @@ import com.android.mail.utils.LogUtils;
 import com.android.mail.utils.VeiledAddressMatcher;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -685,6 +687,39 @@ public class ConversationViewAdapter extends BaseAdapter {
         }
     }
 
+    /**
+     * Remove the headers and footers of the given messages, e.g. when they have been deleted.
+     * Their views must be recycled afterwards, see {@link #notifyDataSetChanged()}.
+     */
+    public void removeItemsForMessages(Collection<ConversationMessage> messages) {
+        final Set<ConversationOverlayItem> removedItems = Sets.newHashSet();
+        final Iterator<ConversationOverlayItem> it = mItems.iterator();
+        while (it.hasNext()) {
+            final ConversationOverlayItem item = it.next();
+            boolean remove = false;
+            if (item instanceof MessageFooterItem) {
+                // a footer comes right after the header of its message
+                remove = removedItems.contains(((MessageFooterItem) item).getHeaderItem());
+            } else {
+                for (ConversationMessage message : messages) {
+                    if (item.belongsToMessage(message)) {
+                        remove = true;
+                        break;
+                    }
+                }
+            }
+            if (remove) {
+                removedItems.add(item);
+                it.remove();
+            }
+        }
+
+        // update position for all items
+        for (int i = 0, size = mItems.size(); i < size; i++) {
+            mItems.get(i).setPosition(i);
+        }
+    }
+
     public void updateItemsForMessage(ConversationMessage message,
             List<Integer> affectedPositions) {
         for (int i = 0, len = mItems.size(); i < len; i++) {
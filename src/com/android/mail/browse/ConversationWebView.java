@@ -99,6 +99,21 @@ public class ConversationWebView extends MailWebView implements ScrollNotifier {
         super.destroy();
     }
 
+    /**
+     * Forgets the state of the conversation this view last showed, so that
+     * {@link ConversationWebViewPool} can hand it out for another one.
+     */
+    void resetForReuse() {
+        destroyBitmap();
+        removeCallbacks(mNotifyPageRenderedInHardwareLayer);
+        mUseSoftwareLayer = false;
+        mVisible = false;
+        mHandlingTouch = false;
+        mIgnoringTouch = false;
+        mScrollListeners.clear();
+        setContentSizeChangeListener(null);
+    }
+
     /**
      * Destroys the {@link Bitmap} used for software layer.
      */
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.browse;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.content.res.Configuration;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.LayoutInflater;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import com.android.mail.R;
+import com.android.mail.utils.LogTag;
+import com.android.mail.utils.LogUtils;
+import com.google.common.collect.Sets;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A small pool of {@link ConversationWebView}s shared by all conversation views, so that paging
+ * through conversations does not create a WebView for every one of them. Creating a WebView is
+ * one of the most expensive steps of opening a conversation.
+ * <p>
+ * Conversation views {@link #obtain(Context)} their WebView when they create their views and
+ * {@link #recycle(ConversationWebView, String)} it when they destroy them. Idle WebViews have
+ * loaded a blank page, so their renderer is already up, and they are bound to the application
+ * context so they don't leak an activity. A WebView is only handed out once its blank page has
+ * finished loading, so that the conversation view never hears about that page.
+ * {@link #prewarm(Context)} fills the pool while the UI thread is idle, ahead of the first
+ * conversations.
+ * <p>
+ * The pool is only used on the UI thread.
+ */
+public final class ConversationWebViewPool {
+    private static final String LOG_TAG = LogTag.getLogTag();
+
+    /** The number of idle WebViews to keep, enough for both neighbors of a conversation. */
+    private static final int MAX_IDLE = 2;
+
+    private static final String BLANK_PAGE = "about:blank";
+
+    private static final Deque<ConversationWebView> sIdle =
+            new ArrayDeque<ConversationWebView>(MAX_IDLE);
+
+    /** The idle WebViews that are still loading the blank page. */
+    private static final Set<WebView> sLoadingBlankPage = Sets.newHashSet();
+
+    private static final WebViewClient sIdleClient = new WebViewClient() {
+        @Override
+        public void onPageFinished(WebView view, String url) {
+            if (sLoadingBlankPage.remove(view)) {
+                view.clearHistory();
+            }
+        }
+    };
+
+    /** Fills the pool while the UI thread is idle, or null if it isn't waiting to. */
+    private static MessageQueue.IdleHandler sPrewarmHandler;
+
+    private static ComponentCallbacks2 sComponentCallbacks;
+
+    private ConversationWebViewPool() {}
+
+    /**
+     * @return a WebView for a conversation view of the given activity, either an idle one that
+     *     has finished loading the blank page or a new one. It has no parent yet.
+     */
+    public static ConversationWebView obtain(Context context) {
+        final Iterator<ConversationWebView> it = sIdle.iterator();
+        while (it.hasNext()) {
+            final ConversationWebView webView = it.next();
+            if (!sLoadingBlankPage.contains(webView)) {
+                it.remove();
+                ((MutableContextWrapper) webView.getContext()).setBaseContext(context);
+                return webView;
+            }
+        }
+        return create(context);
+    }
+
+    /**
+     * Returns a WebView taken from {@link #obtain(Context)} to the pool once its conversation
+     * view is done with it, or destroys it if the pool is full. It must already be removed from
+     * its parent.
+     *
+     * @param jsInterfaceName the name of the JavaScript interface the conversation view added
+     */
+    public static void recycle(ConversationWebView webView, String jsInterfaceName) {
+        webView.stopLoading();
+        webView.removeJavascriptInterface(jsInterfaceName);
+        webView.setWebViewClient(null);
+        webView.setWebChromeClient(null);
+        webView.setOnCreateContextMenuListener(null);
+        webView.resetForReuse();
+
+        if (sIdle.size() >= MAX_IDLE || webView.getParent() != null) {
+            webView.destroy();
+            return;
+        }
+        park(webView);
+    }
+
+    /**
+     * Fills the pool with new WebViews, one at a time whenever the UI thread is idle.
+     */
+    public static void prewarm(final Context context) {
+        if (sPrewarmHandler != null || sIdle.size() >= MAX_IDLE) {
+            return;
+        }
+        // The handler holds on to the activity until it is done or cancelled
+        sPrewarmHandler = new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (sIdle.size() < MAX_IDLE) {
+                    park(create(context));
+                }
+                if (sIdle.size() < MAX_IDLE) {
+                    return true;
+                }
+                sPrewarmHandler = null;
+                return false;
+            }
+        };
+        Looper.myQueue().addIdleHandler(sPrewarmHandler);
+    }
+
+    /**
+     * Stops filling the pool, e.g. because the activity given to {@link #prewarm(Context)} is
+     * being destroyed.
+     */
+    public static void cancelPrewarm() {
+        if (sPrewarmHandler != null) {
+            Looper.myQueue().removeIdleHandler(sPrewarmHandler);
+            sPrewarmHandler = null;
+        }
+    }
+
+    private static ConversationWebView create(Context context) {
+        registerComponentCallbacks(context);
+        // The wrapper lets an idle WebView drop the activity it was last used in
+        final Context wrapper = new MutableContextWrapper(context);
+        return (ConversationWebView) LayoutInflater.from(context).cloneInContext(wrapper)
+                .inflate(R.layout.conversation_webview, null /* root */);
+    }
+
+    private static void park(ConversationWebView webView) {
+        webView.scrollTo(0, 0);
+        webView.setWebViewClient(sIdleClient);
+        sLoadingBlankPage.add(webView);
+        webView.loadUrl(BLANK_PAGE);
+        final MutableContextWrapper context = (MutableContextWrapper) webView.getContext();
+        context.setBaseContext(context.getApplicationContext());
+        sIdle.addLast(webView);
+    }
+
+    private static void clear() {
+        cancelPrewarm();
+        LogUtils.d(LOG_TAG, "Destroying %d idle conversation WebViews", sIdle.size());
+        sLoadingBlankPage.clear();
+        ConversationWebView webView;
+        while ((webView = sIdle.pollFirst()) != null) {
+            webView.destroy();
+        }
+    }
+
+    private static void registerComponentCallbacks(Context context) {
+        if (sComponentCallbacks != null) {
+            return;
+        }
+        sComponentCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    clear();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                // Idle WebViews were inflated for the old configuration
+                clear();
+            }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+        };
+        context.getApplicationContext().registerComponentCallbacks(sComponentCallbacks);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.browse;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+
+import com.android.mail.providers.UIProvider.MessageColumns;
+import com.android.mail.utils.LogTag;
+import com.android.mail.utils.LogUtils;
+
+import java.util.List;
+
+/**
+ * Loads the bodies that a provider left out of a {@link MessageCursor} in one background task.
+ * Each message's uri is queried in turn for just the body columns, since providers have no query
+ * for the bodies of several messages. See
+ * {@link com.android.mail.providers.UIProvider#LAZY_BODIES_QUERY_PARAMETER}.
+ */
+public class MessageBodyLoadTask extends AsyncTask<Void, Void, Void> {
+    private static final String LOG_TAG = LogTag.getLogTag();
+
+    private static final String[] BODY_PROJECTION = {
+        MessageColumns.BODY_HTML,
+        MessageColumns.BODY_TEXT
+    };
+
+    public interface Callback {
+        /**
+         * Called on the UI thread with the bodies of the messages, in the order they were given
+         * in. Both the html and the text of a body that could not be loaded are null.
+         */
+        void onBodiesLoaded(long[] ids, String[] html, String[] text);
+    }
+
+    private final ContentResolver mResolver;
+    private final Callback mCallback;
+    private final long[] mIds;
+    private final Uri[] mUris;
+    private final String[] mHtml;
+    private final String[] mText;
+
+    public MessageBodyLoadTask(ContentResolver resolver, List<ConversationMessage> messages,
+            Callback callback) {
+        mResolver = resolver;
+        mCallback = callback;
+        final int count = messages.size();
+        mIds = new long[count];
+        mUris = new Uri[count];
+        mHtml = new String[count];
+        mText = new String[count];
+        for (int i = 0; i < count; i++) {
+            final ConversationMessage m = messages.get(i);
+            mIds[i] = m.id;
+            mUris[i] = m.uri;
+        }
+    }
+
+    @Override
+    protected Void doInBackground(Void... params) {
+        for (int i = 0; i < mUris.length && !isCancelled(); i++) {
+            if (mUris[i] == null) {
+                continue;
+            }
+            final Cursor cursor = mResolver.query(mUris[i], BODY_PROJECTION, null, null, null);
+            if (cursor == null) {
+                LogUtils.w(LOG_TAG, "Unable to load body of message %d", mIds[i]);
+                continue;
+            }
+            try {
+                if (cursor.moveToFirst()) {
+                    mHtml[i] = cursor.getString(
+                            cursor.getColumnIndex(MessageColumns.BODY_HTML));
+                    mText[i] = cursor.getString(
+                            cursor.getColumnIndex(MessageColumns.BODY_TEXT));
+                    if (mHtml[i] == null && mText[i] == null) {
+                        // an empty body, as opposed to one that couldn't be loaded
+                        mText[i] = "";
+                    }
+                } else {
+                    LogUtils.w(LOG_TAG, "Unable to find message %d to load its body", mIds[i]);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected void onPostExecute(Void result) {
+        mCallback.onBodiesLoaded(mIds, mHtml, mText);
+    }
+}
@@ -28,16 +28,22 @@ import com.android.mail.providers.Conversation;
 import com.android.mail.providers.UIProvider.CursorExtraKeys;
 import com.android.mail.providers.UIProvider.CursorStatus;
 import com.android.mail.ui.ConversationUpdater;
+import com.android.mail.utils.LogTag;
+import com.android.mail.utils.LogUtils;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * MessageCursor contains the messages within a conversation; the public methods within should
  * only be called by the UI thread, as cursor position isn't guaranteed to be maintained
  */
 public class MessageCursor extends ObjectCursor<ConversationMessage> {
+    private static final String LOG_TAG = LogTag.getLogTag();
+
     /**
      * The current controller that this cursor can use to reference the owning {@link Conversation},
      * and a current {@link ConversationUpdater}. Since this cursor will survive a rotation, but
@@ -47,6 +53,9 @@ public class MessageCursor extends ObjectCursor<ConversationMessage> {
     private ConversationController mController;
 
     private Integer mStatus;
+    private Boolean mBodiesOmitted;
+    /** The kind of conversation, as worked out by the loader when the cursor was loaded. */
+    private String mRenderTraceBucket;
 
     public interface ConversationController {
         Conversation getConversation();
@@ -70,6 +79,7 @@ public class MessageCursor extends ObjectCursor<ConversationMessage> {
         // so if we want to continue using them after rotate, we have to ensure their controller
         // references always point to the current controller.
         m.setController(mController);
+        m.checkBodyOmitted(areBodiesOmitted());
         return m;
     }
 
@@ -120,6 +130,74 @@ public class MessageCursor extends ObjectCursor<ConversationMessage> {
         return null;
     }
 
+    /**
+     * Returns the messages between the given positions, inclusive, whose bodies are pending.
+     * See {@link ConversationMessage#isBodyPending()}.
+     */
+    public List<ConversationMessage> getMessagesWithPendingBodies(int start, int end) {
+        final List<ConversationMessage> messages = Lists.newArrayList();
+        if (!areBodiesOmitted()) {
+            return messages;
+        }
+        int pos = start - 1;
+        while (++pos <= end && moveToPosition(pos)) {
+            final ConversationMessage m = getMessage();
+            if (m.isBodyPending()) {
+                messages.add(m);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Sets the bodies loaded for messages whose bodies were pending, e.g. by a
+     * {@link MessageBodyLoadTask}. Messages that are no longer in this cursor are skipped.
+     * A body that failed to load stays pending, so that it is loaded again the next time its
+     * message is rendered, and is not carried over to later cursors.
+     */
+    public void setLoadedBodies(long[] ids, String[] html, String[] text) {
+        for (int i = 0; i < ids.length; i++) {
+            final ConversationMessage m = getMessageForId(ids[i]);
+            if (m == null || !m.isBodyPending()) {
+                continue;
+            }
+            if (html[i] == null && text[i] == null) {
+                LogUtils.w(LOG_TAG, "Failed to load the body of message %d", ids[i]);
+                continue;
+            }
+            m.setLoadedBody(html[i], text[i]);
+        }
+    }
+
+    /**
+     * Copies the bodies of messages in a previous cursor of the same conversation to the
+     * messages whose bodies are pending in this one, so that bodies which have been loaded once
+     * are not loaded again whenever the conversation changes.
+     */
+    public void copyLoadedBodies(MessageCursor oldCursor) {
+        if (!areBodiesOmitted() || oldCursor.isClosed()) {
+            return;
+        }
+        final Map<Long, ConversationMessage> oldMessages = Maps.newHashMap();
+        int pos = -1;
+        while (oldCursor.moveToPosition(++pos)) {
+            final ConversationMessage m = oldCursor.getMessage();
+            if (!m.isBodyPending()) {
+                oldMessages.put(m.id, m);
+            }
+        }
+        pos = -1;
+        while (moveToPosition(++pos)) {
+            final ConversationMessage m = getMessage();
+            if (m.isBodyPending()) {
+                final ConversationMessage old = oldMessages.get(m.id);
+                if (old != null) {
+                    m.setLoadedBody(old.bodyHtml, old.bodyText);
+                }
+            }
+        }
+    }
+
     public int getStateHashCode() {
         return getStateHashCode(0);
     }
@@ -157,6 +235,31 @@ public class MessageCursor extends ObjectCursor<ConversationMessage> {
         return mStatus;
     }
 
+    /**
+     * Returns true if the provider left out the bodies of some messages.
+     * See {@link com.android.mail.providers.UIProvider#LAZY_BODIES_QUERY_PARAMETER}.
+     */
+    public boolean areBodiesOmitted() {
+        if (mBodiesOmitted == null) {
+            final Bundle extras = getExtras();
+            mBodiesOmitted = extras != null
+                    && extras.getBoolean(CursorExtraKeys.EXTRA_BODIES_OMITTED);
+        }
+        return mBodiesOmitted;
+    }
+
+    public void setRenderTraceBucket(String bucket) {
+        mRenderTraceBucket = bucket;
+    }
+
+    /**
+     * @return the kind of conversation for {@link com.android.mail.perf.ConversationRenderTrace},
+     *     or null if the loader didn't work it out
+     */
+    public String getRenderTraceBucket() {
+        return mRenderTraceBucket;
+    }
+
     /**
      * Returns true if the cursor is fully loaded. Returns false if the cursor is expected to get
      * new messages.
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.browse;
+
+import android.database.AbstractCursor;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Bundle;
+
+import com.android.mail.providers.UIProvider;
+import com.android.mail.providers.UIProvider.ConversationCursorCommand;
+
+import java.util.Arrays;
+
+/**
+ * A cursor over the pages of a conversation list that were queried one at a time. See
+ * {@link UIProvider.ConversationListQueryParameters#ORDER_KEY_BEFORE}.
+ * <p>
+ * {@link #append(Cursor, int)} adds a page to the same PagedCursor, which owns all of its pages:
+ * no other cursor moves or closes them. The extras are those of the first page, and commands go
+ * to the page of the current row, or to every page if they don't depend on the position.
+ */
+final class PagedCursor extends AbstractCursor {
+    private Cursor[] mPages;
+    /** The position of the first row of each page, followed by the total count. */
+    private int[] mPageStarts;
+    private boolean mHasMorePages;
+    private long mLastOrderKey;
+
+    /** The page of the current row. */
+    private Cursor mCursor;
+
+    /**
+     * @param firstPage rows in the {@link UIProvider#CONVERSATION_PROJECTION}
+     * @param limit the number of rows that the page was queried with
+     */
+    PagedCursor(Cursor firstPage, int limit) {
+        mPages = new Cursor[0];
+        mPageStarts = new int[1];
+        append(firstPage, limit);
+    }
+
+    /**
+     * Adds a page after the rows of this cursor, which keeps its position. Whoever reads this
+     * cursor on other threads must be kept out meanwhile.
+     *
+     * @param page the next page, queried with the {@link #getLastOrderKey()} of this cursor
+     * @param limit the number of rows that the page was queried with
+     */
+    void append(Cursor page, int limit) {
+        final int count = mPages.length;
+        mPages = Arrays.copyOf(mPages, count + 1);
+        mPages[count] = page;
+        mPageStarts = Arrays.copyOf(mPageStarts, count + 2);
+        mPageStarts[count + 1] = mPageStarts[count] + page.getCount();
+
+        // The page isn't read through this cursor yet, so it can be moved here
+        if (page.moveToLast()) {
+            mHasMorePages = page.getCount() >= limit;
+            mLastOrderKey = page.getLong(UIProvider.CONVERSATION_ORDER_KEY_COLUMN);
+        } else {
+            mHasMorePages = false;
+            if (count == 0) {
+                mLastOrderKey = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @return whether the last page was full, so that there may be more after it
+     */
+    boolean hasMorePages() {
+        return mHasMorePages;
+    }
+
+    /**
+     * @return the order key of the last row, to query the next page with
+     */
+    long getLastOrderKey() {
+        return mLastOrderKey;
+    }
+
+    @Override
+    public int getCount() {
+        return mPageStarts[mPages.length];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mPages[0].getColumnNames();
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        int page = Arrays.binarySearch(mPageStarts, 0, mPages.length, newPosition);
+        if (page < 0) {
+            page = -page - 2;
+        } else {
+            // Skip the empty pages that start at the same position
+            while (mPageStarts[page + 1] == newPosition) {
+                page++;
+            }
+        }
+        mCursor = mPages[page];
+        return mCursor.moveToPosition(newPosition - mPageStarts[page]);
+    }
+
+    @Override
+    public String getString(int column) {
+        return mCursor.getString(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return mCursor.getShort(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return mCursor.getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return mCursor.getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return mCursor.getFloat(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return mCursor.getDouble(column);
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        return mCursor.getBlob(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        return mCursor.getType(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return mCursor.isNull(column);
+    }
+
+    @Override
+    public Bundle getExtras() {
+        return mPages[0].getExtras();
+    }
+
+    @Override
+    public Bundle respond(Bundle extras) {
+        final int opts = extras.getInt(ConversationCursorCommand.COMMAND_KEY_OPTIONS);
+        if ((opts & ConversationCursorCommand.OPTION_MOVE_POSITION) != 0) {
+            return mCursor != null ? mCursor.respond(extras) : Bundle.EMPTY;
+        }
+        Bundle response = Bundle.EMPTY;
+        for (int i = mPages.length - 1; i >= 0; i--) {
+            response = mPages[i].respond(extras);
+        }
+        return response;
+    }
+
+    @Override
+    public void registerContentObserver(ContentObserver observer) {
+        for (Cursor page : mPages) {
+            page.registerContentObserver(observer);
+        }
+    }
+
+    @Override
+    public void unregisterContentObserver(ContentObserver observer) {
+        for (Cursor page : mPages) {
+            page.unregisterContentObserver(observer);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Cursor page : mPages) {
+            page.close();
+        }
+        super.close();
+    }
+}
@@ -77,24 +77,161 @@ public class SendersView {
     private static TextAppearanceSpan sMessageInfoUnreadStyleSpan;
     private static BidiFormatter sBidiFormatter;
 
-    // We only want to have at most 2 Priority to length maps.  This will handle the case where
+    // We only want to have at most 2 Priority to length tables.  This will handle the case where
     // there is a widget installed on the launcher while the user is scrolling in the app
-    private static final int MAX_PRIORITY_LENGTH_MAP_LIST = 2;
+    private static final int MAX_PRIORITY_LENGTH_TABLE_LIST = 2;
 
-    // Cache of priority to length maps.  We can't just use a single instance as it may be
+    // Cache of priority to length tables.  We can't just use a single instance as it may be
     // modified from different threads
-    private static final ObjectCache<Map<Integer, Integer>> PRIORITY_LENGTH_MAP_CACHE =
-            new ObjectCache<Map<Integer, Integer>>(
-                    new ObjectCache.Callback<Map<Integer, Integer>>() {
+    private static final ObjectCache<PriorityLengthTable> PRIORITY_LENGTH_TABLE_CACHE =
+            new ObjectCache<PriorityLengthTable>(
+                    new ObjectCache.Callback<PriorityLengthTable>() {
                         @Override
-                        public Map<Integer, Integer> newInstance() {
-                            return Maps.newHashMap();
+                        public PriorityLengthTable newInstance() {
+                            return new PriorityLengthTable();
                         }
                         @Override
-                        public void onObjectReleased(Map<Integer, Integer> object) {
+                        public void onObjectReleased(PriorityLengthTable object) {
                             object.clear();
                         }
-                    }, MAX_PRIORITY_LENGTH_MAP_LIST);
+                    }, MAX_PRIORITY_LENGTH_TABLE_LIST);
+
+    // Number of conversations whose styled sender names are pooled. Entries are direct-mapped by
+    // ConversationInfo hash code and validated slot by slot, so a collision only costs a rebuild.
+    private static final int STYLED_NAMES_POOL_SIZE = 256;
+
+    // Senders are formatted on the UI thread as well as by the widget and notifications, so each
+    // thread gets its own styled names pool and scratch collections
+    private static final ThreadLocal<FormatState> FORMAT_STATE = new ThreadLocal<FormatState>() {
+        @Override
+        protected FormatState initialValue() {
+            return new FormatState();
+        }
+    };
+
+    /**
+     * Per-thread state reused by {@link #handlePriority}.
+     */
+    private static final class FormatState {
+        final StyledNames[] styledNamesPool = new StyledNames[STYLED_NAMES_POOL_SIZE];
+        final Map<String, Integer> displayHash = Maps.newHashMap();
+        final List<String> senderEmails = Lists.newArrayListWithExpectedSize(MAX_SENDER_COUNT);
+    }
+
+    /**
+     * Maps participant priorities to sender name lengths. Priorities are small non-negative
+     * integers, so the lengths live in a flat int array indexed by priority and grown on demand,
+     * avoiding the boxing of a {@code Map<Integer, Integer>}.
+     */
+    private static final class PriorityLengthTable {
+        private static final int ABSENT = -1;
+
+        private int[] mLengths = new int[MAX_SENDER_COUNT * 4];
+        private int mMaxPriority = -1;
+
+        void put(int priority, int length) {
+            if (priority < 0) {
+                // Negative priorities are never included, so there is no need to track them
+                return;
+            }
+            if (priority >= mLengths.length) {
+                final int[] lengths = new int[Math.max(priority + 1, mLengths.length * 2)];
+                System.arraycopy(mLengths, 0, lengths, 0, mMaxPriority + 1);
+                mLengths = lengths;
+            }
+            for (int i = mMaxPriority + 1; i < priority; i++) {
+                mLengths[i] = ABSENT;
+            }
+            mLengths[priority] = length;
+            mMaxPriority = Math.max(mMaxPriority, priority);
+        }
+
+        boolean contains(int priority) {
+            return priority >= 0 && priority <= mMaxPriority && mLengths[priority] != ABSENT;
+        }
+
+        int get(int priority) {
+            return mLengths[priority];
+        }
+
+        void clear() {
+            mMaxPriority = -1;
+        }
+    }
+
+    /**
+     * A styled sender name along with the inputs it was built from.
+     */
+    private static final class StyledName {
+        final String name;
+        final CharacterStyle baseStyle;
+        final SpannableString styled;
+
+        StyledName(String name, CharacterStyle baseStyle, SpannableString styled) {
+            this.name = name;
+            this.baseStyle = baseStyle;
+            this.styled = styled;
+        }
+
+        boolean matches(String name, CharacterStyle baseStyle) {
+            return this.baseStyle == baseStyle && TextUtils.equals(this.name, name);
+        }
+    }
+
+    /**
+     * The styled sender names last produced for a {@link ConversationInfo}, one slot per
+     * participant. Pools are confined to one thread, but the returned {@link SpannableString}s
+     * are shared between calls and must not be modified by callers.
+     */
+    private static final class StyledNames {
+        final int hash;
+        final StyledName[] participants;
+        StyledName elided;
+
+        StyledNames(int hash, int participantCount) {
+            this.hash = hash;
+            this.participants = new StyledName[participantCount];
+        }
+
+        static StyledNames obtain(StyledNames[] pool, ConversationInfo conversationInfo) {
+            final int hash = conversationInfo.hashCode();
+            final int count = conversationInfo.participantInfos.size();
+            final int index = (hash & 0x7fffffff) % STYLED_NAMES_POOL_SIZE;
+            StyledNames names = pool[index];
+            if (names == null || names.hash != hash || names.participants.length != count) {
+                names = new StyledNames(hash, count);
+                pool[index] = names;
+            }
+            return names;
+        }
+
+        SpannableString getParticipant(int position, String name, CharacterStyle baseStyle) {
+            StyledName styledName = participants[position];
+            if (styledName == null || !styledName.matches(name, baseStyle)) {
+                styledName = new StyledName(name, baseStyle,
+                        createStyledString(sBidiFormatter.unicodeWrap(name), baseStyle));
+                participants[position] = styledName;
+            }
+            return styledName.styled;
+        }
+
+        SpannableString getElided(CharacterStyle baseStyle) {
+            final String elidedString = sElidedString.toString();
+            StyledName styledName = elided;
+            if (styledName == null || !styledName.matches(elidedString, baseStyle)) {
+                styledName = new StyledName(elidedString, baseStyle,
+                        createStyledString(elidedString, baseStyle));
+                elided = styledName;
+            }
+            return styledName.styled;
+        }
+
+        private static SpannableString createStyledString(String text, CharacterStyle baseStyle) {
+            final SpannableString styled = new SpannableString(text);
+            styled.setSpan(CharacterStyle.wrap(baseStyle), 0, styled.length(), 0);
+            return styled;
+        }
+    }
 
     public static Typeface getTypeface(boolean isUnread) {
         return isUnread ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT;
@@ -141,6 +278,14 @@ public class SendersView {
         }
     }
 
+    /**
+     * Loads the strings and styles used to format senders ahead of the first call to
+     * {@link #format}. Safe to call from a background thread.
+     */
+    public static void warmUpResources(Context context) {
+        getSenderResources(context, true /* resourceCachingRequired */);
+    }
+
     public static SpannableStringBuilder createMessageInfo(Context context, Conversation conv,
             final boolean resourceCachingRequired) {
         SpannableStringBuilder messageInfo = new SpannableStringBuilder();
@@ -284,9 +429,8 @@ public class SendersView {
             numCharsToRemovePerWord = numCharsUsed - maxChars;
         }
 
-        final Map<Integer, Integer> priorityToLength = PRIORITY_LENGTH_MAP_CACHE.get();
+        final PriorityLengthTable priorityToLength = PRIORITY_LENGTH_TABLE_CACHE.get();
         try {
-            priorityToLength.clear();
             int senderLength;
             for (ParticipantInfo info : conversationInfo.participantInfos) {
                 final String senderName = info.name;
@@ -295,7 +439,7 @@ public class SendersView {
                 maxFoundPriority = Math.max(maxFoundPriority, info.priority);
             }
             while (maxPriorityToInclude < maxFoundPriority) {
-                if (priorityToLength.containsKey(maxPriorityToInclude + 1)) {
+                if (priorityToLength.contains(maxPriorityToInclude + 1)) {
                     int length = numCharsUsed + priorityToLength.get(maxPriorityToInclude + 1);
                     if (numCharsUsed > 0)
                         length += 2;
@@ -311,13 +455,18 @@ public class SendersView {
                 maxPriorityToInclude++;
             }
         } finally {
-            PRIORITY_LENGTH_MAP_CACHE.release(priorityToLength);
+            PRIORITY_LENGTH_TABLE_CACHE.release(priorityToLength);
         }
 
+        final FormatState state = FORMAT_STATE.get();
+        final StyledNames styledNames =
+                StyledNames.obtain(state.styledNamesPool, conversationInfo);
         SpannableString spannableDisplay;
         boolean appendedElided = false;
-        final Map<String, Integer> displayHash = Maps.newHashMap();
-        final List<String> senderEmails = Lists.newArrayListWithExpectedSize(MAX_SENDER_COUNT);
+        final Map<String, Integer> displayHash = state.displayHash;
+        final List<String> senderEmails = state.senderEmails;
+        displayHash.clear();
+        senderEmails.clear();
         String firstSenderEmail = null;
         String firstSenderName = null;
         for (int i = 0; i < conversationInfo.participantInfos.size(); i++) {
@@ -336,10 +485,9 @@ public class SendersView {
             }
 
             final int priority = currentParticipant.priority;
-            final CharacterStyle style = CharacterStyle.wrap(currentParticipant.readConversation ?
-                    readStyleSpan : unreadStyleSpan);
+            final CharacterStyle style = currentParticipant.readConversation ?
+                    readStyleSpan : unreadStyleSpan;
             if (priority <= maxPriorityToInclude) {
-                spannableDisplay = new SpannableString(sBidiFormatter.unicodeWrap(nameString));
                 // Don't duplicate senders; leave the first instance, unless the
                 // current instance is also unread.
                 int oldPos = displayHash.containsKey(currentName) ? displayHash
@@ -359,13 +507,12 @@ public class SendersView {
                         }
                     }
                     displayHash.put(currentName, i);
-                    spannableDisplay.setSpan(style, 0, spannableDisplay.length(), 0);
+                    spannableDisplay = styledNames.getParticipant(i, nameString, style);
                     styledSenders.add(spannableDisplay);
                 }
             } else {
                 if (!appendedElided) {
-                    spannableDisplay = new SpannableString(sElidedString);
-                    spannableDisplay.setSpan(style, 0, spannableDisplay.length(), 0);
+                    spannableDisplay = styledNames.getElided(style);
                     appendedElided = true;
                     styledSenders.add(spannableDisplay);
                 }
@@ -212,6 +212,12 @@ public class ComposeActivity extends AppCompatActivity
      */
     private static final int COMPLETION_THRESHOLD = 1;
 
+    /**
+     * Roughly a screenful of text: how much of a draft's html body is converted before it is
+     * first shown.
+     */
+    private static final int HTML_TO_SPAN_FIRST_CHUNK_LENGTH = 2048;
+
     private static SendOrSaveCallback sTestSendOrSaveCallback = null;
     // Map containing information about requests to create new messages, and the id of the
     // messages that were the result of those requests.
@@ -309,6 +315,10 @@ public class ComposeActivity extends AppCompatActivity
     protected int mComposeMode = -1;
     private boolean mForward;
     private QuotedTextView mQuotedTextView;
+    private HtmlToSpannedTask mHtmlToSpannedTask;
+    /** A send or save that waits for {@link #mHtmlToSpannedTask} to finish, or null. */
+    private Runnable mPendingSendOrSave;
+    private boolean mPendingSend;
     protected EditText mBodyView;
     private View mFromStatic;
     private TextView mFromStaticText;
@@ -985,6 +995,18 @@ public class ComposeActivity extends AppCompatActivity
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // Don't keep converting a draft body that will never be shown. A send or save that
+        // waits for it, e.g. the one made when backing out, still needs the whole body.
+        if (mHtmlToSpannedTask != null && mPendingSendOrSave == null) {
+            mHtmlToSpannedTask.cancel(false);
+            mHtmlToSpannedTask = null;
+        }
+    }
+
     @Override
     protected void onActivityResult(int request, int result, Intent data) {
         if (request == RESULT_PICK_ATTACHMENT) {
@@ -1607,7 +1629,11 @@ public class ComposeActivity extends AppCompatActivity
                             message.bodyHtml.length());
                 }
             }
-            new HtmlToSpannedTask().execute(body);
+            if (mHtmlToSpannedTask != null) {
+                mHtmlToSpannedTask.cancel(false);
+            }
+            mHtmlToSpannedTask = new HtmlToSpannedTask();
+            mHtmlToSpannedTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, body);
         } else {
             final String body = message.bodyText;
             final CharSequence bodyText;
@@ -2950,6 +2976,14 @@ public class ComposeActivity extends AppCompatActivity
      */
     protected void sendOrSaveWithSanityChecks(final boolean save, final boolean showToast,
             final boolean orientationChanged, final boolean autoSend) {
+        if (deferSendOrSave(save, new Runnable() {
+            @Override
+            public void run() {
+                sendOrSaveWithSanityChecks(save, showToast, orientationChanged, autoSend);
+            }
+        })) {
+            return;
+        }
         if (mAccounts == null || mAccount == null) {
             Toast.makeText(this, R.string.send_failed, Toast.LENGTH_SHORT).show();
             if (autoSend) {
@@ -3289,6 +3323,15 @@ public class ComposeActivity extends AppCompatActivity
     }
 
     protected void sendOrSave(final boolean save, final boolean showToast) {
+        if (deferSendOrSave(save, new Runnable() {
+            @Override
+            public void run() {
+                sendOrSave(save, showToast);
+            }
+        })) {
+            return;
+        }
+
         // Check if user is a monkey. Monkeys can compose and hit send
         // button but are not allowed to send anything off the device.
         if (ActivityManager.isUserAMonkey()) {
@@ -3998,19 +4041,90 @@ public class ComposeActivity extends AppCompatActivity
     }
 
     /**
-     * Background task to convert the message's html to Spanned.
+     * Makes a send or save wait until the draft body has been converted, so that the whole body
+     * is sent or saved rather than the part that is shown so far. Only one send or save waits:
+     * a send replaces a waiting save, since it saves too, and anything else is dropped.
+     *
+     * @param sendOrSave runs the send or save again once the body has been converted
+     * @return true if the send or save has to wait
      */
-    private class HtmlToSpannedTask extends AsyncTask<String, Void, Spanned> {
+    private boolean deferSendOrSave(boolean save, Runnable sendOrSave) {
+        if (mHtmlToSpannedTask == null) {
+            return false;
+        }
+        if (mPendingSendOrSave == null || (!save && !mPendingSend)) {
+            mPendingSendOrSave = sendOrSave;
+            mPendingSend = !save;
+        }
+        return true;
+    }
+
+    /**
+     * Background task to convert the message's html to Spanned. The first screenful of text is
+     * shown as soon as it is converted, and the rest replaces it when the conversion finishes.
+     */
+    private class HtmlToSpannedTask extends AsyncTask<String, Spanned, Spanned>
+            implements HtmlUtils.SpanConversionCallback {
+        private Spanned mPartialBody;
 
         @Override
         protected Spanned doInBackground(String... input) {
-            return HtmlUtils.htmlToSpan(input[0], mSpanConverterFactory);
+            return HtmlUtils.htmlToSpan(input[0], mSpanConverterFactory,
+                    HTML_TO_SPAN_FIRST_CHUNK_LENGTH, this);
+        }
+
+        @Override
+        public void onFirstChunkConverted(Spanned partial) {
+            publishProgress(partial);
+        }
+
+        @Override
+        protected void onProgressUpdate(Spanned... partial) {
+            mPartialBody = partial[0];
+            populateBody(mPartialBody);
         }
 
         @Override
         protected void onPostExecute(Spanned spanned) {
+            if (mHtmlToSpannedTask != this) {
+                return;
+            }
+            mHtmlToSpannedTask = null;
+            showFullBody(spanned);
+
+            final Runnable pending = mPendingSendOrSave;
+            mPendingSendOrSave = null;
+            if (pending != null) {
+                pending.run();
+            }
+        }
+
+        /**
+         * @return whether the user has edited the partial body shown so far
+         */
+        boolean isPartialBodyEdited() {
+            return mPartialBody != null
+                    && !TextUtils.equals(mPartialBody, mBodyView.getText().toString());
+        }
+
+        private void showFullBody(Spanned spanned) {
+            if (spanned == null) {
+                return;
+            }
+            if (isPartialBodyEdited()) {
+                // The user has already started editing the partial body, so keep their changes
+                // and only add the text that was still missing.
+                mBodyView.removeTextChangedListener(ComposeActivity.this);
+                mBodyView.getText().append(spanned, mPartialBody.length(), spanned.length());
+                mBodyView.addTextChangedListener(ComposeActivity.this);
+            } else {
+                populateBody(spanned);
+            }
+        }
+
+        private void populateBody(Spanned body) {
             mBodyView.removeTextChangedListener(ComposeActivity.this);
-            setBody(spanned, false);
+            setBody(body, false);
             mTextChanged = false;
             mBodyView.addTextChangedListener(ComposeActivity.this);
         }
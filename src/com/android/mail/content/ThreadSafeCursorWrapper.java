@@ -28,11 +28,20 @@ public class ThreadSafeCursorWrapper extends CursorWrapper {
     private static final String LOG_TAG = LogTag.getLogTag();
 
     private final ThreadLocal<Integer> mPosition;
-    private final Object mLock = new Object();
+    private final Object mLock;
 
     public ThreadSafeCursorWrapper(Cursor cursor) {
+        this(cursor, new Object());
+    }
+
+    /**
+     * @param lock the lock that rows are read under. Wrappers of cursors that share their rows
+     *     must share it too.
+     */
+    protected ThreadSafeCursorWrapper(Cursor cursor, Object lock) {
         super(cursor);
 
+        mLock = lock;
         mPosition = new ThreadLocal<Integer>() {
             @Override
             protected Integer initialValue() {
@@ -41,6 +50,10 @@ public class ThreadSafeCursorWrapper extends CursorWrapper {
         };
     }
 
+    protected Object getLock() {
+        return mLock;
+    }
+
     @Override
     public String getString(int column) {
         synchronized (mLock) {
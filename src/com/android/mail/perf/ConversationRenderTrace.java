@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.perf;
+
+import android.os.SystemClock;
+
+import com.android.mail.utils.LogTag;
+import com.android.mail.utils.LogUtils;
+import com.google.common.collect.Maps;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Traces the stages of opening a conversation, so that a regression can be pinned on a stage
+ * rather than only showing up in {@link com.android.mail.analytics.AnalyticsTimer}'s end to end
+ * time.
+ * <p>
+ * Each stage is timed by a span: {@link #begin(String, String)} returns its id, and
+ * {@link #end(int)} records its duration in a {@link LatencyHistogram} for the stage and the kind
+ * of conversation it was for, as given by {@link #getBucket(int, int, boolean)}. A span that won't
+ * end, e.g. because its view was destroyed, is {@link #cancel(int)}ed.
+ * The histograms are kept in memory and printed by {@link #dump(String, PrintWriter)}, which is
+ * part of the activity's dump:
+ *
+ * <pre>
+ * adb shell dumpsys activity com.android.mail/.ui.MailActivity
+ * </pre>
+ *
+ * All methods are thread-safe.
+ */
+public final class ConversationRenderTrace {
+    private static final String LOG_TAG = LogTag.getLogTag();
+
+    /** Loading the message cursor, in the message loader. */
+    public static final String MESSAGE_CURSOR_LOAD = "message_cursor_load";
+    /** Preparing the message bodies of a loaded cursor for rendering, in the message loader. */
+    public static final String PREPARE_BODIES = "prepare_bodies";
+    /**
+     * Sanitizing the HTML of a message body, for any caller, so it is bucketed by
+     * {@link #getBodyBucket(int)}.
+     */
+    public static final String SANITIZE = "sanitize";
+    /** Building the conversation HTML and its overlay items. */
+    public static final String RENDER_MESSAGE_BODIES = "render_message_bodies";
+    /** From loading the conversation HTML into the WebView until it has finished loading. */
+    public static final String LOAD_DATA = "load_data";
+    /** From loading the conversation HTML into the WebView until it is ready to be shown. */
+    public static final String CONTENT_READY = "content_ready";
+
+    /** The id of no span, which is safe to end or cancel. */
+    public static final int NO_SPAN = 0;
+
+    /** More open spans than this means some are never ended, so the oldest one is dropped. */
+    static final int MAX_OPEN_SPANS = 64;
+
+    /** The largest body size of each size bucket but the last, in chars. */
+    private static final int[] BODY_SIZE_BUCKETS = { 16 * 1024, 128 * 1024 };
+
+    private static final AtomicInteger sNextSpanId = new AtomicInteger(NO_SPAN + 1);
+
+    /** Open spans by id, oldest first. */
+    private static final ConcurrentSkipListMap<Integer, Span> sSpans =
+            new ConcurrentSkipListMap<Integer, Span>();
+
+    /** Histograms by stage and bucket, in name order. Guarded by itself. */
+    private static final Map<String, LatencyHistogram> sHistograms = Maps.newTreeMap();
+
+    private ConversationRenderTrace() {}
+
+    /**
+     * Starts timing a stage.
+     *
+     * @param bucket the kind of conversation, see {@link #getBucket(int, int, boolean)}
+     * @return the id of the span, to end or cancel it with
+     */
+    public static int begin(String stage, String bucket) {
+        if (sSpans.size() >= MAX_OPEN_SPANS) {
+            final Map.Entry<Integer, Span> oldest = sSpans.pollFirstEntry();
+            if (oldest != null) {
+                LogUtils.w(LOG_TAG, "Dropping the oldest open render trace span, %s",
+                        oldest.getValue().mStage);
+            }
+        }
+        int id = sNextSpanId.getAndIncrement();
+        if (id == NO_SPAN) {
+            // wrapped around
+            id = sNextSpanId.getAndIncrement();
+        }
+        sSpans.put(id, new Span(stage, bucket, SystemClock.uptimeMillis()));
+        return id;
+    }
+
+    /**
+     * Stops timing the span with the given id, which may have been begun on another thread, and
+     * records its duration.
+     *
+     * @return the duration in milliseconds, or -1 if there is no such open span
+     */
+    public static long end(int spanId) {
+        return end(spanId, null);
+    }
+
+    /**
+     * Like {@link #end(int)}, for a span whose kind of conversation was only known at its end.
+     *
+     * @param bucket the kind of conversation, or null to keep the one the span was begun with
+     */
+    public static long end(int spanId, String bucket) {
+        final Span span = sSpans.remove(spanId);
+        if (span == null) {
+            return -1;
+        }
+        final long duration = SystemClock.uptimeMillis() - span.mStartMs;
+        final String name =
+                span.mStage + " [" + (bucket != null ? bucket : span.mBucket) + "]";
+        synchronized (sHistograms) {
+            LatencyHistogram histogram = sHistograms.get(name);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                sHistograms.put(name, histogram);
+            }
+            histogram.record(duration);
+        }
+        LogUtils.v(LOG_TAG, "%s took %dms (span %d)", name, duration, spanId);
+        return duration;
+    }
+
+    /**
+     * Stops timing the span with the given id without recording it.
+     */
+    public static void cancel(int spanId) {
+        sSpans.remove(spanId);
+    }
+
+    /**
+     * Prints the histograms of all stages.
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("Conversation render trace:");
+        final String innerPrefix = prefix + "  ";
+        synchronized (sHistograms) {
+            for (Map.Entry<String, LatencyHistogram> entry : sHistograms.entrySet()) {
+                writer.print(innerPrefix);
+                writer.println(entry.getKey());
+                entry.getValue().dump(innerPrefix + "  ", writer);
+            }
+        }
+        writer.print(innerPrefix);
+        writer.print("open spans: ");
+        writer.println(sSpans.size());
+    }
+
+    /**
+     * @param messageCount the number of messages in the conversation
+     * @param bodyChars the total length of their bodies
+     * @param plainText whether any of the bodies is plain text rather than HTML
+     * @return the kind of conversation, e.g. "2-4 msgs, <=16K chars, html", so that conversations
+     *     of a similar shape share their histograms
+     */
+    public static String getBucket(int messageCount, int bodyChars, boolean plainText) {
+        final StringBuilder sb = new StringBuilder();
+        if (messageCount <= 1) {
+            sb.append("1 msg");
+        } else if (messageCount <= 4) {
+            sb.append("2-4 msgs");
+        } else if (messageCount <= 19) {
+            sb.append("5-19 msgs");
+        } else {
+            sb.append("20+ msgs");
+        }
+        sb.append(", ");
+        appendBodySize(sb, bodyChars);
+        sb.append(plainText ? ", text" : ", html");
+        return sb.toString();
+    }
+
+    /**
+     * @param bodyChars the length of a single body
+     * @return the kind of a body that isn't tied to a conversation, e.g. one sanitized for
+     *     compose or a notification, such as "body <=16K chars". These don't share their
+     *     histograms with the buckets of {@link #getBucket(int, int, boolean)}.
+     */
+    public static String getBodyBucket(int bodyChars) {
+        final StringBuilder sb = new StringBuilder("body ");
+        appendBodySize(sb, bodyChars);
+        return sb.toString();
+    }
+
+    private static void appendBodySize(StringBuilder sb, int bodyChars) {
+        int i = 0;
+        while (i < BODY_SIZE_BUCKETS.length && bodyChars > BODY_SIZE_BUCKETS[i]) {
+            i++;
+        }
+        if (i < BODY_SIZE_BUCKETS.length) {
+            sb.append("<=").append(BODY_SIZE_BUCKETS[i] / 1024).append("K chars");
+        } else {
+            sb.append(">").append(BODY_SIZE_BUCKETS[i - 1] / 1024).append("K chars");
+        }
+    }
+
+    private static final class Span {
+        final String mStage;
+        final String mBucket;
+        final long mStartMs;
+
+        Span(String stage, String bucket, long startMs) {
+            mStage = stage;
+            mBucket = bucket;
+            mStartMs = startMs;
+        }
+    }
+}
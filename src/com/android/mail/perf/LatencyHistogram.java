@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.perf;
+
+import java.io.PrintWriter;
+
+/**
+ * A histogram of durations in milliseconds, in buckets that double in size, so that it stays
+ * small however many durations it records. Percentiles are only as precise as the buckets.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class LatencyHistogram {
+    /** The exclusive upper bounds of all buckets but the last one, which has no bound. */
+    private static final long[] BUCKET_BOUNDS_MS =
+            { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, 4096, 8192 };
+
+    private final int[] mBucketCounts = new int[BUCKET_BOUNDS_MS.length + 1];
+    private int mCount;
+    private long mTotalMs;
+    private long mMaxMs;
+
+    public void record(long durationMs) {
+        if (durationMs < 0) {
+            durationMs = 0;
+        }
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && durationMs >= BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        mBucketCounts[bucket]++;
+        mCount++;
+        mTotalMs += durationMs;
+        mMaxMs = Math.max(mMaxMs, durationMs);
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public long getMeanMs() {
+        return mCount == 0 ? 0 : mTotalMs / mCount;
+    }
+
+    public long getMaxMs() {
+        return mMaxMs;
+    }
+
+    /**
+     * @param percentile a percentile between 1 and 100
+     * @return a bound that at least the given percentage of the recorded durations are below or
+     *     equal to: the upper bound of their bucket, or the maximum if that is lower
+     */
+    public long getPercentileMs(int percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        // the rank of the duration at the percentile, rounded up
+        final long rank = ((long) mCount * percentile + 99) / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            seen += mBucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_MS[i], mMaxMs);
+            }
+        }
+        return mMaxMs;
+    }
+
+    /**
+     * Prints a summary line followed by the counts of all non-empty buckets.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print("n=");
+        writer.print(mCount);
+        writer.print(" mean=");
+        writer.print(getMeanMs());
+        writer.print("ms p50<=");
+        writer.print(getPercentileMs(50));
+        writer.print("ms p90<=");
+        writer.print(getPercentileMs(90));
+        writer.print("ms p99<=");
+        writer.print(getPercentileMs(99));
+        writer.print("ms max=");
+        writer.print(mMaxMs);
+        writer.println("ms");
+
+        writer.print(prefix);
+        for (int i = 0; i < mBucketCounts.length; i++) {
+            if (mBucketCounts[i] == 0) {
+                continue;
+            }
+            if (i < BUCKET_BOUNDS_MS.length) {
+                writer.print(" <");
+                writer.print(BUCKET_BOUNDS_MS[i]);
+            } else {
+                writer.print(" >=");
+                writer.print(BUCKET_BOUNDS_MS[i - 1]);
+            }
+            writer.print("ms:");
+            writer.print(mBucketCounts[i]);
+        }
+        writer.println();
+    }
+}
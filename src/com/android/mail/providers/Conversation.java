@@ -556,7 +556,10 @@ public class Conversation implements Parcelable {
                 ConversationCursorCommand.OPTION_MOVE_POSITION);
     }
 
-    private static ConversationInfo readConversationInfo(Cursor cursor) {
+    /**
+     * @return the {@link ConversationInfo} of the conversation at the cursor's current position
+     */
+    public static ConversationInfo readConversationInfo(Cursor cursor) {
         final ConversationInfo ci;
 
         if (cursor instanceof ConversationCursor) {
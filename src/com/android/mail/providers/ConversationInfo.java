@@ -19,8 +19,6 @@ package com.android.mail.providers;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import com.google.common.base.Objects;
-
 import java.util.ArrayList;
 
 public class ConversationInfo implements Parcelable {
@@ -149,8 +147,17 @@ public class ConversationInfo implements Parcelable {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(messageCount, draftCount, participantInfos, firstSnippet,
-                lastSnippet, firstUnreadSnippet);
+        // Hashed by hand rather than with Objects.hashCode(), which boxes the counts into a
+        // varargs array on every call; the sender names pool hashes every row it formats
+        int result = 31 + messageCount;
+        result = 31 * result + draftCount;
+        for (int i = 0, size = participantInfos.size(); i < size; i++) {
+            result = 31 * result + participantInfos.get(i).hashCode();
+        }
+        result = 31 * result + (firstSnippet == null ? 0 : firstSnippet.hashCode());
+        result = 31 * result + (lastSnippet == null ? 0 : lastSnippet.hashCode());
+        result = 31 * result + (firstUnreadSnippet == null ? 0 : firstUnreadSnippet.hashCode());
+        return result;
     }
 
     public static final Creator<ConversationInfo> CREATOR = new Creator<ConversationInfo>() {
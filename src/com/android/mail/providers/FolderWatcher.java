@@ -18,32 +18,41 @@
 package com.android.mail.providers;
 
 import android.app.LoaderManager;
+import android.content.Context;
 import android.content.Loader;
+import android.database.ContentObserver;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.annotation.NonNull;
 
-import com.android.mail.content.ObjectCursor;
-import com.android.mail.content.ObjectCursorLoader;
 import com.android.mail.ui.AbstractActivityController;
+import com.android.mail.ui.MailAsyncTaskLoader;
 import com.android.mail.ui.RestrictedActivity;
 import com.android.mail.utils.LogUtils;
-import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A container to keep a list of Folder objects, with the ability to automatically keep in sync with
  * the folders in the providers.
+ *
+ * All watched inboxes are read by a single loader rather than one loader per account. The loader
+ * keeps the inbox cursors open to observe them, and when one changes it queries only that inbox
+ * again, so listeners hear about a batch of changes only once without every inbox being re-read.
  */
 public class FolderWatcher {
-    public static final String FOLDER_URI = "FOLDER-URI";
+    public static final String FOLDER_URIS = "FOLDER-URIS";
+    /** The loader ID used for the inbox loader. */
+    private static final int INBOX_LOADER_ID = AbstractActivityController.LAST_LOADER_ID;
     /** List of URIs that are watched. */
-    private final List<Uri> mUris = new ArrayList<Uri>();
+    private final ArrayList<Uri> mUris = new ArrayList<Uri>();
     /** Map returning the default inbox folder for each URI */
     private final Map<Uri, Folder> mInboxMap = new HashMap<Uri, Folder>();
     private final RestrictedActivity mActivity;
@@ -83,97 +92,31 @@ public class FolderWatcher {
             return;
         }
         // Create list of Inbox URIs from the array of accounts.
-        final List<Uri> newAccounts = new ArrayList<Uri>(allAccounts.length);
+        final ArrayList<Uri> newAccounts = new ArrayList<Uri>(allAccounts.length);
         for (final Account account : allAccounts) {
-            newAccounts.add(account.settings.defaultInbox);
-        }
-        // Stop watching accounts not in the new list.
-        final List<Uri> uriCopy = Collections.unmodifiableList(Lists.newArrayList(mUris));
-        for (final Uri previous : uriCopy) {
-            if (!newAccounts.contains(previous)) {
-                stopWatching(previous);
+            final Uri inbox = account.settings.defaultInbox;
+            if (inbox != null && !newAccounts.contains(inbox)) {
+                newAccounts.add(inbox);
             }
         }
-        // Add accounts in the new list, that are not already watched.
-        for (final Uri fresh : newAccounts) {
-            if (!mUris.contains(fresh)) {
-                startWatching(fresh);
-            }
-        }
-    }
-
-    /**
-     * Starts watching the given URI for changes. It is NOT safe to call this method repeatedly
-     * for the same URI.
-     * @param uri the URI for an inbox whose unread count is to be watched
-     */
-    private void startWatching(Uri uri) {
-        final int location = insertAtNextEmptyLocation(uri);
-        LogUtils.d(LOG_TAG, "Watching %s, at position %d.", uri, location);
-        // No inbox folder yet, put a safe placeholder for now.
-        mInboxMap.put(uri, null);
-        final LoaderManager lm = mActivity.getLoaderManager();
-        final Bundle args = new Bundle();
-        args.putString(FOLDER_URI, uri.toString());
-        lm.initLoader(getLoaderFromPosition(location), args, mUnreadCallback);
-    }
-
-    /**
-     * Locates the next empty position in {@link #mUris} and inserts the URI there, returning the
-     * location.
-     * @return location where the URI was inserted.
-     */
-    private int insertAtNextEmptyLocation(Uri newElement) {
-        Uri uri;
-        int location = -1;
-        for (int size = mUris.size(), i = 0; i < size; i++) {
-            uri = mUris.get(i);
-            // Hole in the list, use this position
-            if (uri == null) {
-                location = i;
-                break;
-            }
-        }
-
-        if (location < 0) {
-            // No hole found, return the current size;
-            location = mUris.size();
-            mUris.add(location, newElement);
-        } else {
-            mUris.set(location, newElement);
-        }
-        return location;
-    }
-
-    /**
-     * Returns the loader ID for a position inside the {@link #mUris} table.
-     * @param position position in the {@link #mUris} list
-     * @return a loader id
-     */
-    private static int getLoaderFromPosition(int position) {
-        return position + AbstractActivityController.LAST_LOADER_ID;
-    }
-
-    /**
-     * Stops watching the given URI for folder changes. Subsequent calls to
-     * {@link #getUnreadCount(Account)} for this uri will return null.
-     * @param uri the URI for a folder
-     */
-    private void stopWatching(Uri uri) {
-        if (uri == null) {
+        if (newAccounts.equals(mUris)) {
             return;
         }
+        // Forget accounts not in the new list.
+        mInboxMap.keySet().retainAll(newAccounts);
+        mUris.clear();
+        mUris.addAll(newAccounts);
+        LogUtils.d(LOG_TAG, "Watching %d inboxes", mUris.size());
 
-        final int id = mUris.indexOf(uri);
-        // Does not exist in the list, we have stopped watching it already.
-        if (id < 0) {
+        final LoaderManager lm = mActivity.getLoaderManager();
+        if (mUris.isEmpty()) {
+            lm.destroyLoader(INBOX_LOADER_ID);
             return;
         }
-        // Destroy the loader before removing references to the object.
-        final LoaderManager lm = mActivity.getLoaderManager();
-        lm.destroyLoader(getLoaderFromPosition(id));
-        mInboxMap.remove(uri);
-        mUris.set(id, null);
+        final Bundle args = new Bundle();
+        // The loader reads the list on a worker thread, so it gets a copy of its own
+        args.putParcelableArrayList(FOLDER_URIS, new ArrayList<Uri>(mUris));
+        lm.restartLoader(INBOX_LOADER_ID, args, mUnreadCallback);
     }
 
     /**
@@ -193,44 +136,158 @@ public class FolderWatcher {
     }
 
     public final Folder getDefaultInbox(Account account) {
-        final Uri uri = account.settings.defaultInbox;
-        if (mInboxMap.containsKey(uri)) {
-            final Folder candidate = mInboxMap.get(uri);
-            if (candidate != null) {
-                return candidate;
-            }
-        }
-        return null;
+        return mInboxMap.get(account.settings.defaultInbox);
     }
 
     /**
-     * Class to perform {@link LoaderManager.LoaderCallbacks} for populating unread counts.
+     * Reads the first folder from each of the given URIs in the background. The loader keeps the
+     * inbox cursors open to observe them, and when one of them changes only that inbox is queried
+     * again; the others are carried over from the previous load.
      */
-    private class UnreadLoads implements LoaderManager.LoaderCallbacks<ObjectCursor<Folder>> {
+    private static class InboxesLoader extends MailAsyncTaskLoader<Map<Uri, Folder>> {
         // TODO(viki): Fix http://b/8494129 and read only the URI and unread count.
         /** Only interested in the folder unread count, but asking for everything due to
          * bug 8494129. */
-        private final String[] projection = UIProvider.FOLDERS_PROJECTION;
+        private static final String[] PROJECTION = UIProvider.FOLDERS_PROJECTION;
+
+        private final List<Uri> mUris;
+        /** Guards the fields below, which are read on the worker thread and reset on the UI. */
+        private final Object mLock = new Object();
+        /** Open cursor for each inbox that has been read, observed for changes. */
+        private final Map<Uri, Cursor> mCursors = new HashMap<Uri, Cursor>();
+        /** Most recent folder read for each inbox. */
+        private final Map<Uri, Folder> mFolders = new HashMap<Uri, Folder>();
+        /** Inboxes that changed since they were last read. */
+        private final Set<Uri> mChangedUris = new HashSet<Uri>();
+        private boolean mClosed;
 
+        public InboxesLoader(Context context, List<Uri> uris) {
+            super(context);
+            mUris = new ArrayList<Uri>(uris);
+        }
+
+        @Override
+        protected void onStartLoading() {
+            synchronized (mLock) {
+                mClosed = false;
+            }
+            super.onStartLoading();
+        }
+
+        @Override
+        public Map<Uri, Folder> loadInBackground() {
+            final List<Uri> stale = new ArrayList<Uri>();
+            synchronized (mLock) {
+                for (final Uri uri : mUris) {
+                    if (!mCursors.containsKey(uri) || mChangedUris.contains(uri)) {
+                        stale.add(uri);
+                    }
+                }
+                mChangedUris.removeAll(stale);
+            }
+            for (final Uri uri : stale) {
+                final Cursor cursor = getContext().getContentResolver().query(uri, PROJECTION,
+                        null, null, null);
+                if (cursor == null) {
+                    continue;
+                }
+                final Folder folder = cursor.moveToFirst()
+                        ? Folder.FACTORY.createFromCursor(cursor) : null;
+                synchronized (mLock) {
+                    if (mClosed) {
+                        cursor.close();
+                        continue;
+                    }
+                    cursor.registerContentObserver(new InboxObserver(uri));
+                    final Cursor previous = mCursors.put(uri, cursor);
+                    if (previous != null) {
+                        previous.close();
+                    }
+                    if (folder != null) {
+                        mFolders.put(uri, folder);
+                    } else {
+                        mFolders.remove(uri);
+                    }
+                }
+            }
+            synchronized (mLock) {
+                return new HashMap<Uri, Folder>(mFolders);
+            }
+        }
+
+        @Override
+        protected void onDiscardResult(Map<Uri, Folder> result) {
+            // Nothing to release, the cursors belong to the loader.
+        }
+
+        @Override
+        protected void onReset() {
+            super.onReset();
+            synchronized (mLock) {
+                mClosed = true;
+                for (final Cursor cursor : mCursors.values()) {
+                    cursor.close();
+                }
+                mCursors.clear();
+                mFolders.clear();
+                mChangedUris.clear();
+            }
+        }
+
+        /**
+         * Marks a single inbox as changed and reloads, so that only that inbox is queried again.
+         */
+        private class InboxObserver extends ContentObserver {
+            private final Uri mUri;
+
+            public InboxObserver(Uri uri) {
+                super(new Handler());
+                mUri = uri;
+            }
+
+            @Override
+            public boolean deliverSelfNotifications() {
+                return true;
+            }
+
+            @Override
+            public void onChange(boolean selfChange) {
+                synchronized (mLock) {
+                    mChangedUris.add(mUri);
+                }
+                onContentChanged();
+            }
+        }
+    }
+
+    /**
+     * Class to perform {@link LoaderManager.LoaderCallbacks} for populating unread counts.
+     */
+    private class UnreadLoads implements LoaderManager.LoaderCallbacks<Map<Uri, Folder>> {
         @Override
-        public Loader<ObjectCursor<Folder>> onCreateLoader(int id, Bundle args) {
-            final Uri uri = Uri.parse(args.getString(FOLDER_URI));
-            return new ObjectCursorLoader<Folder>(mActivity.getActivityContext(), uri, projection,
-                    Folder.FACTORY);
+        public Loader<Map<Uri, Folder>> onCreateLoader(int id, Bundle args) {
+            final List<Uri> uris = args.getParcelableArrayList(FOLDER_URIS);
+            return new InboxesLoader(mActivity.getActivityContext(), uris);
         }
 
         @Override
-        public void onLoadFinished(Loader<ObjectCursor<Folder>> loader, ObjectCursor<Folder> data) {
-            if (data == null || data.getCount() <= 0 || !data.moveToFirst()) {
+        public void onLoadFinished(Loader<Map<Uri, Folder>> loader, Map<Uri, Folder> data) {
+            if (data == null) {
                 return;
             }
-            final Folder f = data.getModel();
-            final Uri uri = f.folderUri.getComparisonUri();
-            final int unreadCount = f.unreadCount;
-            final Folder previousFolder = mInboxMap.get(uri);
-            final boolean unreadCountChanged = previousFolder == null
-                    || unreadCount != previousFolder.unreadCount;
-            mInboxMap.put(uri, f);
+            boolean unreadCountChanged = false;
+            for (final Map.Entry<Uri, Folder> entry : data.entrySet()) {
+                final Uri uri = entry.getKey();
+                if (!mUris.contains(uri)) {
+                    // Stopped watching this inbox while it was loading.
+                    continue;
+                }
+                final Folder f = entry.getValue();
+                final Folder previousFolder = mInboxMap.get(uri);
+                unreadCountChanged |= previousFolder == null
+                        || f.unreadCount != previousFolder.unreadCount;
+                mInboxMap.put(uri, f);
+            }
             // Once we have updated data, we notify the parent class that something new appeared.
             if (unreadCountChanged) {
                 mConsumer.onUnreadCountChange();
@@ -238,7 +295,7 @@ public class FolderWatcher {
         }
 
         @Override
-        public void onLoaderReset(Loader<ObjectCursor<Folder>> loader) {
+        public void onLoaderReset(Loader<Map<Uri, Folder>> loader) {
             // Do nothing.
         }
     }
@@ -25,9 +25,7 @@ import android.os.Parcel;
 import android.os.Parcelable;
 import android.provider.BaseColumns;
 import android.text.Html;
-import android.text.SpannableString;
 import android.text.TextUtils;
-import android.text.util.Linkify;
 import android.text.util.Rfc822Token;
 import android.text.util.Rfc822Tokenizer;
 
@@ -41,6 +39,7 @@ import com.android.emailcommon.utility.ConversionUtilities;
 import com.android.mail.providers.UIProvider.MessageColumns;
 import com.android.mail.ui.HtmlMessage;
 import com.android.mail.utils.HtmlSanitizer;
+import com.android.mail.utils.PlainTextLinkifier;
 import com.android.mail.utils.Utils;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
@@ -225,6 +224,10 @@ public class Message implements Parcelable, HtmlMessage {
 
     private transient List<Attachment> mAttachments = null;
 
+    // The last plain-text body that was converted to HTML, and the HTML it was converted to
+    private transient String mLinkifiedText = null;
+    private transient String mLinkifiedHtml = null;
+
     @Override
     public int describeContents() {
         return 0;
@@ -715,10 +718,12 @@ public class Message implements Parcelable, HtmlMessage {
         if (!TextUtils.isEmpty(bodyHtml)) {
             body = bodyHtml;
         } else if (!TextUtils.isEmpty(bodyText)) {
-            final SpannableString spannable = new SpannableString(bodyText);
-            Linkify.addLinks(spannable, Linkify.EMAIL_ADDRESSES | Linkify.WEB_URLS
-                    | Linkify.PHONE_NUMBERS);
-            body = Html.toHtml(spannable);
+            final String text = bodyText;
+            if (text != mLinkifiedText) {
+                mLinkifiedHtml = PlainTextLinkifier.toHtml(text);
+                mLinkifiedText = text;
+            }
+            body = mLinkifiedHtml;
         }
         return body;
     }
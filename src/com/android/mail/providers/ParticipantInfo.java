@@ -19,8 +19,6 @@ package com.android.mail.providers;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import com.google.common.base.Objects;
-
 public class ParticipantInfo implements Parcelable {
 
     /** the pretty name of the participant if one exists */
@@ -52,7 +50,12 @@ public class ParticipantInfo implements Parcelable {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(name, email, priority, readConversation);
+        // Same value as Objects.hashCode() over the fields, without boxing them into an array
+        int result = 31 + (name == null ? 0 : name.hashCode());
+        result = 31 * result + (email == null ? 0 : email.hashCode());
+        result = 31 * result + priority;
+        result = 31 * result + (readConversation ? 1231 : 1237);
+        return result;
     }
 
     public static final Creator<ParticipantInfo> CREATOR = new Creator<ParticipantInfo>() {
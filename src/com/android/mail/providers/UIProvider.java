@@ -166,6 +166,17 @@ public class UIProvider {
     public static final String LABEL_QUERY_PARAMETER = "label";
     public static final String SEEN_QUERY_PARAMETER = "seen";
 
+    /**
+     * Query parameter that can be set to "true" on a conversation's message list uri to ask for
+     * the bodies of messages that are read, unstarred and neither the first nor the last message
+     * to be left out, since conversation view initially hides those in a super-collapsed block.
+     * A provider that leaves out any {@link MessageColumns#BODY_HTML} and
+     * {@link MessageColumns#BODY_TEXT} must set {@link CursorExtraKeys#EXTRA_BODIES_OMITTED}.
+     * The UI then queries each message's {@link MessageColumns#URI} for the missing bodies when it
+     * shows them.  UIProvider implementations are not required to respect this query parameter.
+     */
+    public static final String LAZY_BODIES_QUERY_PARAMETER = "lazyBodies";
+
     /**
      * Query parameter that can be used to specify a parent for a the returned folder object from a
      * query. When set, if a folder is returned that does not have a true parent, it will use this
@@ -758,6 +769,14 @@ public class UIProvider {
          */
         public static final String ALL_NOTIFICATIONS = "all_notifications";
 
+        /**
+         * Parameter used with {@link #LIMIT} to query the next page of a conversation list: only
+         * the conversations whose {@link ConversationColumns#ORDER_KEY} is less than the given
+         * value, i.e. those that come after the last one of the previous page. Only used when the
+         * cursor of the first page set {@link CursorExtraKeys#EXTRA_ORDER_KEY_PAGING}.
+         */
+        public static final String ORDER_KEY_BEFORE = "order_key_before";
+
         private ConversationListQueryParameters() {}
     }
 
@@ -1717,6 +1736,20 @@ public class UIProvider {
          * This integer column contains the total message count for this folder.
          */
         public static final String EXTRA_TOTAL_COUNT = "cursor_total_count";
+
+        /**
+         * This boolean is true when the bodies of some messages were left out of a message
+         * cursor. See {@link UIProvider#LAZY_BODIES_QUERY_PARAMETER}.
+         */
+        public static final String EXTRA_BODIES_OMITTED = "cursor_bodies_omitted";
+
+        /**
+         * This boolean is true when a conversation list that was queried with a
+         * {@link ConversationListQueryParameters#LIMIT} can be continued page by page with
+         * {@link ConversationListQueryParameters#ORDER_KEY_BEFORE}. The list must then be
+         * ordered by descending, unique {@link ConversationColumns#ORDER_KEY}.
+         */
+        public static final String EXTRA_ORDER_KEY_PAGING = "cursor_order_key_paging";
     }
 
     public static final class AccountCursorExtraKeys {
@@ -2127,11 +2127,7 @@ public abstract class AbstractActivityController implements ActivityController,
         // If the conversation is in the selected set, remove it from the set.
         // Batch selections are cleared in the end of the action, so not done for batch actions.
         if (!isBatch) {
-            for (final Conversation conv : target) {
-                if (mCheckedSet.contains(conv)) {
-                    mCheckedSet.toggle(conv);
-                }
-            }
+            mCheckedSet.removeAll(target);
         }
         // The conversation list deletes and performs the action if it exists.
         final ConversationListFragment convListFragment = getConversationListFragment();
@@ -27,6 +27,7 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.Nullable;
+import android.text.TextUtils;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -41,6 +42,7 @@ import com.android.mail.browse.MessageCursor;
 import com.android.mail.browse.MessageCursor.ConversationController;
 import com.android.mail.content.ObjectCursor;
 import com.android.mail.content.ObjectCursorLoader;
+import com.android.mail.perf.ConversationRenderTrace;
 import com.android.mail.providers.Account;
 import com.android.mail.providers.AccountObserver;
 import com.android.mail.providers.Conversation;
@@ -207,6 +209,15 @@ public abstract class AbstractConversationViewFragment extends Fragment implemen
         }
     }
 
+    /**
+     * Subclasses that can show messages whose bodies are pending, and load them as needed, can
+     * override this to ask the provider to leave out the bodies of messages that are initially
+     * hidden. See {@link UIProvider#LAZY_BODIES_QUERY_PARAMETER}.
+     */
+    protected boolean loadsMessageBodiesLazily() {
+        return false;
+    }
+
     /**
      * Subclasses must override this, since they may want to display a single or
      * many messages related to this conversation.
@@ -484,7 +495,8 @@ public abstract class AbstractConversationViewFragment extends Fragment implemen
 
         @Override
         public Loader<ObjectCursor<ConversationMessage>> onCreateLoader(int id, Bundle args) {
-            return new MessageLoader(mActivity.getActivityContext(), mConversation.messageListUri);
+            return new MessageLoader(mActivity.getActivityContext(), mConversation.messageListUri,
+                    loadsMessageBodiesLazily());
         }
 
         @Override
@@ -638,11 +650,34 @@ public abstract class AbstractConversationViewFragment extends Fragment implemen
         return new ConversationViewState();
     }
 
+    /**
+     * @return the kind of the conversation of the given messages, for
+     *     {@link ConversationRenderTrace}
+     */
+    static String getRenderTraceBucket(MessageCursor cursor) {
+        int bodyChars = 0;
+        boolean plainText = false;
+        int pos = -1;
+        while (cursor.moveToPosition(++pos)) {
+            final ConversationMessage msg = cursor.getMessage();
+            if (!TextUtils.isEmpty(msg.bodyHtml)) {
+                bodyChars += msg.bodyHtml.length();
+            } else if (!TextUtils.isEmpty(msg.bodyText)) {
+                bodyChars += msg.bodyText.length();
+                plainText = true;
+            }
+        }
+        return ConversationRenderTrace.getBucket(cursor.getCount(), bodyChars, plainText);
+    }
+
     private static class MessageLoader extends ObjectCursorLoader<ConversationMessage> {
         private boolean mDeliveredFirstResults = false;
 
-        public MessageLoader(Context c, Uri messageListUri) {
-            super(c, messageListUri, UIProvider.MESSAGE_PROJECTION, ConversationMessage.FACTORY);
+        public MessageLoader(Context c, Uri messageListUri, boolean lazyBodies) {
+            super(c, lazyBodies ? messageListUri.buildUpon()
+                    .appendQueryParameter(UIProvider.LAZY_BODIES_QUERY_PARAMETER,
+                            Boolean.TRUE.toString()).build() : messageListUri,
+                    UIProvider.MESSAGE_PROJECTION, ConversationMessage.FACTORY);
         }
 
         @Override
@@ -670,6 +705,41 @@ public abstract class AbstractConversationViewFragment extends Fragment implemen
             }
         }
 
+        @Override
+        public ObjectCursor<ConversationMessage> loadInBackground() {
+            // the kind of conversation is only known once it is loaded
+            final int loadSpan = ConversationRenderTrace.begin(
+                    ConversationRenderTrace.MESSAGE_CURSOR_LOAD, null /* bucket */);
+            ObjectCursor<ConversationMessage> result = null;
+            String bucket = null;
+            try {
+                result = super.loadInBackground();
+                if (result != null) {
+                    bucket = getRenderTraceBucket((MessageCursor) result);
+                    // so that rendering doesn't have to walk the cursor again on the UI thread
+                    ((MessageCursor) result).setRenderTraceBucket(bucket);
+                }
+            } finally {
+                if (bucket != null) {
+                    ConversationRenderTrace.end(loadSpan, bucket);
+                } else {
+                    ConversationRenderTrace.cancel(loadSpan);
+                }
+            }
+            if (result == null) {
+                return null;
+            }
+
+            final int prepareSpan =
+                    ConversationRenderTrace.begin(ConversationRenderTrace.PREPARE_BODIES, bucket);
+            try {
+                MessageBodyPreparer.prepare((MessageCursor) result);
+            } finally {
+                ConversationRenderTrace.end(prepareSpan);
+            }
+            return result;
+        }
+
         @Override
         protected ObjectCursor<ConversationMessage> getObjectCursor(Cursor inner) {
             return new MessageCursor(inner);
@@ -22,6 +22,8 @@ import android.os.Bundle;
 import android.os.StrictMode;
 import android.support.v7.app.AppCompatActivity;
 
+import com.android.mail.perf.ConversationRenderTrace;
+
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 
@@ -97,6 +99,7 @@ public abstract class AbstractMailActivity extends AppCompatActivity implements
         // Both are still possible to use, and the supportlib dump reads from neither.
         getLoaderManager().dump(prefix, fd, writer, args);
         getFragmentManager().dump(prefix, fd, writer, args);
+        ConversationRenderTrace.dump(prefix, writer);
     }
 
 }
@@ -19,20 +19,19 @@ package com.android.mail.ui;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.support.v4.util.LongSparseArray;
 
 import com.android.mail.browse.ConversationCursor;
 import com.android.mail.providers.Conversation;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -41,6 +40,9 @@ import java.util.Set;
  * when the set goes empty, and when it becomes unempty. For simplicity, this
  * class <b>does not allow modifications</b> to the collection in observers when
  * responding to change events.
+ * <p>
+ * Conversations are kept by their primitive id. Bulk changes, such as selecting a range of a
+ * cursor or dropping the conversations that left it, notify the observers once.
  */
 public class ConversationCheckedSet implements Parcelable {
     public static final ClassLoaderCreator<ConversationCheckedSet> CREATOR =
@@ -65,9 +67,9 @@ public class ConversationCheckedSet implements Parcelable {
 
     private final Object mLock = new Object();
     /** Map of conversation ID to conversation objects. Every selected conversation is here. */
-    private final HashMap<Long, Conversation> mInternalMap = new HashMap<Long, Conversation>();
-    /** Map of Conversation URI to Conversation ID. */
-    private final BiMap<String, Long> mConversationUriToIdMap = HashBiMap.create();
+    private final LongSparseArray<Conversation> mInternalMap = new LongSparseArray<Conversation>();
+    /** The selected conversations, as returned by {@link #values()} until the set changes. */
+    private List<Conversation> mValues;
     /** All objects that are interested in changes to the selected set. */
     @VisibleForTesting
     final Set<ConversationSetObserver> mObservers = new HashSet<ConversationSetObserver>();
@@ -83,7 +85,7 @@ public class ConversationCheckedSet implements Parcelable {
         Parcelable[] conversations = source.readParcelableArray(loader);
         for (Parcelable parceled : conversations) {
             Conversation conversation = (Conversation) parceled;
-            put(conversation.id, conversation);
+            mInternalMap.put(conversation.id, conversation);
         }
     }
 
@@ -103,11 +105,11 @@ public class ConversationCheckedSet implements Parcelable {
      */
     public void clear() {
         synchronized (mLock) {
-            boolean initiallyNotEmpty = !mInternalMap.isEmpty();
+            boolean initiallyNotEmpty = !isEmpty();
             mInternalMap.clear();
-            mConversationUriToIdMap.clear();
+            mValues = null;
 
-            if (mInternalMap.isEmpty() && initiallyNotEmpty) {
+            if (initiallyNotEmpty) {
                 ArrayList<ConversationSetObserver> observersCopy = Lists.newArrayList(mObservers);
                 dispatchOnChange(observersCopy);
                 dispatchOnEmpty(observersCopy);
@@ -121,9 +123,9 @@ public class ConversationCheckedSet implements Parcelable {
      * @param key the id of the conversation
      * @return true if the key exists in this selected set.
      */
-    private boolean containsKey(Long key) {
+    private boolean containsKey(long key) {
         synchronized (mLock) {
-            return mInternalMap.containsKey(key);
+            return mInternalMap.indexOfKey(key) >= 0;
         }
     }
 
@@ -169,56 +171,102 @@ public class ConversationCheckedSet implements Parcelable {
         }
     }
 
+    /**
+     * Notifies the observers of a change to the set, once however many conversations changed.
+     * @param initiallyEmpty whether the set was empty before the change
+     */
+    private void dispatchChanges(boolean initiallyEmpty) {
+        synchronized (mLock) {
+            mValues = null;
+            final ArrayList<ConversationSetObserver> observersCopy =
+                    Lists.newArrayList(mObservers);
+            dispatchOnChange(observersCopy);
+            if (initiallyEmpty && !isEmpty()) {
+                dispatchOnBecomeUnempty(observersCopy);
+            } else if (!initiallyEmpty && isEmpty()) {
+                dispatchOnEmpty(observersCopy);
+            }
+        }
+    }
+
     /**
      * Is this conversation set empty?
      * @return true if the conversation selection set is empty. False otherwise.
      */
     public boolean isEmpty() {
         synchronized (mLock) {
-            return mInternalMap.isEmpty();
+            return mInternalMap.size() == 0;
         }
     }
 
-    private void put(Long id, Conversation info) {
+    private void put(long id, Conversation info) {
         synchronized (mLock) {
-            final boolean initiallyEmpty = mInternalMap.isEmpty();
+            final boolean initiallyEmpty = isEmpty();
             mInternalMap.put(id, info);
-            mConversationUriToIdMap.put(info.uri.toString(), id);
+            dispatchChanges(initiallyEmpty);
+        }
+    }
 
-            final ArrayList<ConversationSetObserver> observersCopy = Lists.newArrayList(mObservers);
-            dispatchOnChange(observersCopy);
-            if (initiallyEmpty) {
-                dispatchOnBecomeUnempty(observersCopy);
+    /**
+     * Selects all the given conversations. If there are any listeners they are notified once
+     * after adding <em>all</em> conversations to the selection set.
+     */
+    public void putAll(Collection<Conversation> conversations) {
+        synchronized (mLock) {
+            if (conversations.isEmpty()) {
+                return;
+            }
+            final boolean initiallyEmpty = isEmpty();
+            for (Conversation conversation : conversations) {
+                mInternalMap.put(conversation.id, conversation);
             }
+            dispatchChanges(initiallyEmpty);
         }
     }
 
-    /** @see java.util.HashMap#remove */
-    private void remove(Long id) {
-        synchronized (mLock) {
-            removeAll(Collections.singleton(id));
+    /**
+     * Selects the conversations at the given range of positions in the cursor, e.g. all of them.
+     * The conversations are read from the cursor first, on the caller's thread, which must be the
+     * UI thread (see {@link ConversationCursor#getConversations(int, int)}), and then selected
+     * under the lock of this set. If there are any listeners they are notified once.
+     *
+     * @param first the position of the first conversation to select
+     * @param last the position of the last conversation to select, inclusive
+     */
+    public void putRange(ConversationCursor cursor, int first, int last) {
+        final List<Conversation> conversations = cursor.getConversations(first, last);
+        for (int i = 0; i < conversations.size(); i++) {
+            // Mirror the list position that toggling a conversation's checkbox records
+            conversations.get(i).position = Math.max(first, 0) + i;
         }
+        putAll(conversations);
     }
 
-    private void removeAll(Collection<Long> ids) {
+    /**
+     * Deselects all the given conversations that are selected. If there are any listeners they
+     * are notified once, if any conversation was deselected.
+     */
+    public void removeAll(Collection<Conversation> conversations) {
         synchronized (mLock) {
-            final boolean initiallyNotEmpty = !mInternalMap.isEmpty();
-
-            final BiMap<Long, String> inverseMap = mConversationUriToIdMap.inverse();
-
-            for (Long id : ids) {
-                mInternalMap.remove(id);
-                inverseMap.remove(id);
+            final int initialSize = size();
+            for (Conversation conversation : conversations) {
+                mInternalMap.remove(conversation.id);
             }
-
-            ArrayList<ConversationSetObserver> observersCopy = Lists.newArrayList(mObservers);
-            dispatchOnChange(observersCopy);
-            if (mInternalMap.isEmpty() && initiallyNotEmpty) {
-                dispatchOnEmpty(observersCopy);
+            if (size() != initialSize) {
+                dispatchChanges(initialSize == 0);
             }
         }
     }
 
+    /** @see java.util.HashMap#remove */
+    private void remove(long id) {
+        synchronized (mLock) {
+            final boolean initiallyEmpty = isEmpty();
+            mInternalMap.remove(id);
+            dispatchChanges(initiallyEmpty);
+        }
+    }
+
     /**
      * Unregisters an observer for change events.
      *
@@ -256,17 +304,35 @@ public class ConversationCheckedSet implements Parcelable {
         }
     }
 
-    /** @see java.util.HashMap#values */
+    /**
+     * @return the selected conversations, in order of id. The collection doesn't change with the
+     *     set, and is shared by the callers until the set changes.
+     */
     public Collection<Conversation> values() {
         synchronized (mLock) {
-            return mInternalMap.values();
+            if (mValues == null) {
+                final int size = mInternalMap.size();
+                final ArrayList<Conversation> values = Lists.newArrayListWithCapacity(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(mInternalMap.valueAt(i));
+                }
+                mValues = Collections.unmodifiableList(values);
+            }
+            return mValues;
         }
     }
 
-    /** @see java.util.HashMap#keySet() */
+    /**
+     * @return the ids of the selected conversations. The set doesn't change with this set.
+     */
     public Set<Long> keySet() {
         synchronized (mLock) {
-            return mInternalMap.keySet();
+            final int size = mInternalMap.size();
+            final Set<Long> keys = Sets.newHashSetWithExpectedSize(size);
+            for (int i = 0; i < size; i++) {
+                keys.add(mInternalMap.keyAt(i));
+            }
+            return keys;
         }
     }
 
@@ -280,15 +346,7 @@ public class ConversationCheckedSet implements Parcelable {
         if (other == null) {
             return;
         }
-
-        final boolean initiallyEmpty = mInternalMap.isEmpty();
-        mInternalMap.putAll(other.mInternalMap);
-
-        final ArrayList<ConversationSetObserver> observersCopy = Lists.newArrayList(mObservers);
-        dispatchOnChange(observersCopy);
-        if (initiallyEmpty) {
-            dispatchOnBecomeUnempty(observersCopy);
-        }
+        putAll(other.values());
     }
 
     @Override
@@ -301,8 +359,14 @@ public class ConversationCheckedSet implements Parcelable {
      * @param deletedRows an arraylist of conversation IDs which have been deleted.
      */
     public void delete(ArrayList<Integer> deletedRows) {
-        for (long id : deletedRows) {
-            remove(id);
+        synchronized (mLock) {
+            final int initialSize = size();
+            for (long id : deletedRows) {
+                mInternalMap.remove(id);
+            }
+            if (size() != initialSize) {
+                dispatchChanges(initialSize == 0);
+            }
         }
     }
 
@@ -322,50 +386,32 @@ public class ConversationCheckedSet implements Parcelable {
                 return;
             }
 
-            // First ask the ConversationCursor for the list of conversations that have been deleted
+            // The uris of the conversations that the cursor is treating as deleted
             final Set<String> deletedConversations = cursor.getDeletedItems();
-            // For each of the uris in the deleted set, add the conversation id to the
-            // itemsToRemoveFromBatch set.
-            final Set<Long> itemsToRemoveFromBatch = Sets.newHashSet();
-            for (String conversationUri : deletedConversations) {
-                final Long conversationId = mConversationUriToIdMap.get(conversationUri);
-                if (conversationId != null) {
-                    itemsToRemoveFromBatch.add(conversationId);
-                }
-            }
-
-            // Get the set of the items that had been in the batch
-            final Set<Long> batchConversationToCheck = new HashSet<Long>(keySet());
-
-            // Remove all of the items that we know are missing.  This will leave the items where
-            // we need to check for existence in the cursor
-            batchConversationToCheck.removeAll(itemsToRemoveFromBatch);
-            // At this point batchConversationToCheck contains the conversation ids for the
-            // conversations that had been in the batch selection, with the items we know have been
-            // deleted removed.
-
             // This set contains the conversation ids that are in the conversation cursor
             final Set<Long> cursorConversationIds = cursor.getConversationIds();
 
-            // We want to remove all of the valid items that are in the conversation cursor, from
-            // the batchConversations to check.  The goal is after this block, anything remaining
-            // would be items that don't exist in the conversation cursor anymore.
-            if (!batchConversationToCheck.isEmpty() && cursorConversationIds != null) {
-                batchConversationToCheck.removeAll(cursorConversationIds);
+            // Remove the conversations that have been deleted, or that are no longer in the
+            // conversation cursor
+            final int initialSize = size();
+            for (int i = initialSize - 1; i >= 0; i--) {
+                final Conversation conversation = mInternalMap.valueAt(i);
+                if (deletedConversations.contains(conversation.uri.toString())
+                        || (cursorConversationIds != null
+                                && !cursorConversationIds.contains(conversation.id))) {
+                    mInternalMap.removeAt(i);
+                }
+            }
+            if (size() != initialSize) {
+                dispatchChanges(false /* initiallyEmpty */);
             }
-
-            // At this point any of the item that are remaining in the batchConversationToCheck set
-            // are to be removed from the selected conversation set
-            itemsToRemoveFromBatch.addAll(batchConversationToCheck);
-
-            removeAll(itemsToRemoveFromBatch);
         }
     }
 
     @Override
     public String toString() {
         synchronized (mLock) {
-            return String.format("%s:%s", super.toString(), mInternalMap);
+            return String.format("%s:%s", super.toString(), values());
         }
     }
 }
@@ -713,6 +713,11 @@ public final class ConversationListFragment extends Fragment implements
                     mKeyInitiatedFromList = true;
                 }
                 return true;
+            } else if (keyCode == KeyEvent.KEYCODE_A && keyEvent.isCtrlPressed()) {
+                if (keyEvent.getAction() == KeyEvent.ACTION_UP) {
+                    selectAllConversations();
+                }
+                return true;
             } else if ((keyCode == KeyEvent.KEYCODE_DPAD_UP ||
                     keyCode == KeyEvent.KEYCODE_DPAD_DOWN) &&
                     keyEvent.getAction() == KeyEvent.ACTION_UP) {
@@ -729,6 +734,22 @@ public final class ConversationListFragment extends Fragment implements
         return false;
     }
 
+    /**
+     * Selects every conversation in the list, entering selection mode if needed.
+     */
+    private void selectAllConversations() {
+        final ConversationCursor cursor = getConversationListCursor();
+        if (cursor == null || cursor.getCount() == 0) {
+            return;
+        }
+        if (mCheckedSet.isEmpty()) {
+            Analytics.getInstance().sendEvent("enter_cab_mode", "select_all", null, 0);
+        }
+        mCheckedSet.putRange(cursor, 0, cursor.getCount() - 1);
+        // Rebind the visible items so that they show as checked
+        mListAdapter.notifyDataSetChanged();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -43,6 +43,12 @@ public class ConversationPositionTracker {
     private boolean mCursorDirty = false;
     /** The currently selected conversation */
     private Conversation mConversation;
+    /**
+     * If the current conversation is no longer in the list and was replaced with a neighbor,
+     * whether that one is {@link AutoAdvance#OLDER} or {@link AutoAdvance#NEWER}. Otherwise
+     * {@link AutoAdvance#UNSET}.
+     */
+    private int mReplacedWith = AutoAdvance.UNSET;
 
     private final Callbacks mCallbacks;
 
@@ -84,8 +90,10 @@ public class ConversationPositionTracker {
             return null;
         }
         // Walk backward from the existing position, trying to find a conversation that is not a
-        // victim.
-        pos--;
+        // victim. If the conversation was replaced with a newer one, start from that one.
+        if (mReplacedWith != AutoAdvance.NEWER) {
+            pos--;
+        }
         while (pos >= 0) {
             final Conversation candidate = conversationAtPosition(pos);
             if (!Conversation.contains(victims, candidate)) {
@@ -106,8 +114,10 @@ public class ConversationPositionTracker {
             return null;
         }
         // Walk forward from the existing position, trying to find a conversation that is not a
-        // victim.
-        pos++;
+        // victim. If the conversation was replaced with an older one, start from that one.
+        if (mReplacedWith != AutoAdvance.OLDER) {
+            pos++;
+        }
         while (pos < getCount()) {
             final Conversation candidate = conversationAtPosition(pos);
             if (!Conversation.contains(victims, candidate)) {
@@ -127,6 +137,7 @@ public class ConversationPositionTracker {
      */
     public void initialize(Conversation conversation) {
         mConversation = conversation;
+        mReplacedWith = AutoAdvance.UNSET;
         mCursorDirty = true;
         calculatePosition(); // Return value discarded. Running for side effects.
     }
@@ -182,6 +193,7 @@ public class ConversationPositionTracker {
 
         final int foundPosition = cursor.getConversationPosition(mConversation.id);
         if (foundPosition >= 0) {
+            mReplacedWith = AutoAdvance.UNSET;
             mConversation.position = foundPosition;
             // Pre-emptively try to load the next cursor position so that the cursor window
             // can be filled. The odd behavior of the ConversationCursor requires us to do
@@ -191,15 +203,18 @@ public class ConversationPositionTracker {
             return foundPosition;
         }
 
-        // If the conversation is no longer found in the list, try to save the same position if
-        // it is still a valid position. Otherwise, go back to a valid position until we can
-        // find a valid one.
+        // If the conversation is no longer found in the list, find the position it would have
+        // by its order key, which is where the next older conversation now is. Otherwise, go
+        // back to the last position. If the list can't be searched by order key, give up.
+        final int expectedPosition = cursor.getPositionForOrderKey(mConversation.orderKey);
         final int newPosition;
-        if (foundPosition >= listSize) {
+        if (expectedPosition < 0) {
+            newPosition = foundPosition;
+        } else if (expectedPosition >= listSize) {
             // Go to the last position since our expected position is past this somewhere.
             newPosition = listSize - 1;
         } else {
-            newPosition = foundPosition;
+            newPosition = expectedPosition;
         }
 
         // Did not keep the current conversation, so let's try to load the conversation from the
@@ -211,6 +226,8 @@ public class ConversationPositionTracker {
             cursor.moveToPosition(newPosition);
             mConversation = new Conversation(cursor);
             mConversation.position = newPosition;
+            mReplacedWith = newPosition == expectedPosition ? AutoAdvance.OLDER
+                    : AutoAdvance.NEWER;
         }
         return newPosition;
     }
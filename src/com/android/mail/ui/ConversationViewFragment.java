@@ -27,6 +27,8 @@ import android.graphics.Rect;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.SystemClock;
 import android.support.annotation.IdRes;
 import android.support.annotation.Nullable;
@@ -64,9 +66,11 @@ import com.android.mail.browse.ConversationViewAdapter.MessageHeaderItem;
 import com.android.mail.browse.ConversationViewAdapter.SuperCollapsedBlockItem;
 import com.android.mail.browse.ConversationViewHeader;
 import com.android.mail.browse.ConversationWebView;
+import com.android.mail.browse.ConversationWebViewPool;
 import com.android.mail.browse.InlineAttachmentViewIntentBuilderCreator;
 import com.android.mail.browse.InlineAttachmentViewIntentBuilderCreatorHolder;
 import com.android.mail.browse.MailWebView.ContentSizeChangeListener;
+import com.android.mail.browse.MessageBodyLoadTask;
 import com.android.mail.browse.MessageCursor;
 import com.android.mail.browse.MessageFooterView;
 import com.android.mail.browse.MessageHeaderView;
@@ -75,6 +79,7 @@ import com.android.mail.browse.SuperCollapsedBlock;
 import com.android.mail.browse.WebViewContextMenu;
 import com.android.mail.compose.ComposeActivity;
 import com.android.mail.content.ObjectCursor;
+import com.android.mail.perf.ConversationRenderTrace;
 import com.android.mail.print.PrintUtils;
 import com.android.mail.providers.Account;
 import com.android.mail.providers.Conversation;
@@ -88,6 +93,7 @@ import com.android.mail.utils.LogTag;
 import com.android.mail.utils.LogUtils;
 import com.android.mail.utils.Utils;
 import com.android.mail.utils.ViewUtils;
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -178,6 +184,34 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
      */
     private String mTempBodiesHtml;
 
+    /** The super-collapsed block whose message bodies are being loaded before it is opened. */
+    private SuperCollapsedBlockItem mLoadingSuperCollapsedBlock;
+
+    /**
+     * Overlay items whose heights may be stale, because they were taken from
+     * {@link OverlayHeightCache} or because their message was updated in place, and the heights
+     * they had, to be measured again once the conversation is shown.
+     */
+    private final List<ConversationOverlayItem> mStaleHeightItems = Lists.newArrayList();
+    private final List<Integer> mStaleHeights = Lists.newArrayList();
+
+    /**
+     * Measures the overlays whose heights may be stale, one whenever the UI thread is idle, so
+     * that doing so doesn't hold up showing or scrolling the conversation.
+     */
+    private final MessageQueue.IdleHandler mStaleHeightsIdleHandler =
+            new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (mViewsCreated && !mStaleHeightItems.isEmpty()) {
+                remeasureStaleHeight(mStaleHeightItems.remove(0), mStaleHeights.remove(0));
+            }
+            mStaleHeightsScheduled = mViewsCreated && !mStaleHeightItems.isEmpty();
+            return mStaleHeightsScheduled;
+        }
+    };
+    private boolean mStaleHeightsScheduled;
+
     private int  mMaxAutoLoadMessages;
 
     protected int mSideMarginPx;
@@ -202,6 +236,10 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
 
     private long mWebViewLoadStartMs;
 
+    /** The {@link ConversationRenderTrace} spans of the current load of the WebView. */
+    private int mLoadDataSpan = ConversationRenderTrace.NO_SPAN;
+    private int mContentReadySpan = ConversationRenderTrace.NO_SPAN;
+
     private final Map<String, String> mMessageTransforms = Maps.newHashMap();
 
     private final DataSetObserver mLoadedObserver = new DataSetObserver() {
@@ -213,6 +251,9 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                 public void go() {
                     LogUtils.d(LOG_TAG, "CVF load observer fired, this=%s",
                             ConversationViewFragment.this);
+                    if (!mViewsCreated) {
+                        return;
+                    }
                     handleDelayedConversationLoad();
                 }
             });
@@ -226,7 +267,9 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
             if (isUserVisible()) {
                 onConversationSeen();
             }
-            mWebView.onRenderComplete();
+            if (mWebView != null) {
+                mWebView.onRenderComplete();
+            }
         }
     };
 
@@ -237,6 +280,9 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
     private static final String BUNDLE_KEY_WEBVIEW_Y_PERCENT =
             ConversationViewFragment.class.getName() + "webview-y-percent";
 
+    /** The name script.js uses to call {@link MailJsBridge}. */
+    private static final String JS_INTERFACE_NAME = "mail";
+
     private BidiFormatter mBidiFormatter;
 
     /**
@@ -343,6 +389,10 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
         getHandler().post(new FragmentRunnable("showConversation", this) {
             @Override
             public void go() {
+                if (!mViewsCreated) {
+                    // the views went away before the conversation could be shown
+                    return;
+                }
                 showConversation();
             }
         });
@@ -397,10 +447,10 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
         mProgressController = new ConversationViewProgressController(this, getHandler());
         mProgressController.instantiateProgressIndicators(rootView);
 
-        mWebView = (ConversationWebView)
-                mConversationContainer.findViewById(R.id.conversation_webview);
+        mWebView = ConversationWebViewPool.obtain(getActivity());
+        mConversationContainer.setWebView(mWebView);
 
-        mWebView.addJavascriptInterface(mJsBridge, "mail");
+        mWebView.addJavascriptInterface(mJsBridge, JS_INTERFACE_NAME);
         // On JB or newer, we use the 'webkitAnimationStart' DOM event to signal load complete
         // Below JB, try to speed up initial render by having the webview do supplemental draws to
         // custom a software canvas.
@@ -492,6 +542,14 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
         mAdapter = null;
         resetLoadWaiting(); // be sure to unregister any active load observer
         mViewsCreated = false;
+        mLoadingSuperCollapsedBlock = null;
+        clearStaleHeights();
+        cancelLoadSpans();
+
+        // Give the WebView back to the pool for the next conversation
+        mConversationContainer.removeWebView();
+        ConversationWebViewPool.recycle(mWebView, JS_INTERFACE_NAME);
+        mWebView = null;
     }
 
     @Override
@@ -672,7 +730,11 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
     }
 
     private void renderConversation(MessageCursor messageCursor) {
+        final String traceBucket = messageCursor.getRenderTraceBucket();
+        final int renderSpan = ConversationRenderTrace.begin(
+                ConversationRenderTrace.RENDER_MESSAGE_BODIES, traceBucket);
         final String convHtml = renderMessageBodies(messageCursor, mEnableContentReadySignal);
+        ConversationRenderTrace.end(renderSpan);
         timerMark("rendered conversation");
 
         if (DEBUG_DUMP_CONVERSATION_HTML) {
@@ -698,11 +760,25 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
             mWebViewYPercent = calculateScrollYPercent();
         }
 
+        cancelLoadSpans();
+        mLoadDataSpan =
+                ConversationRenderTrace.begin(ConversationRenderTrace.LOAD_DATA, traceBucket);
+        if (mEnableContentReadySignal) {
+            mContentReadySpan = ConversationRenderTrace.begin(
+                    ConversationRenderTrace.CONTENT_READY, traceBucket);
+        }
         mWebView.loadDataWithBaseURL(mBaseUri, convHtml, "text/html", "utf-8", null);
         mWebViewLoadedData = true;
         mWebViewLoadStartMs = SystemClock.uptimeMillis();
     }
 
+    private void cancelLoadSpans() {
+        ConversationRenderTrace.cancel(mLoadDataSpan);
+        ConversationRenderTrace.cancel(mContentReadySpan);
+        mLoadDataSpan = ConversationRenderTrace.NO_SPAN;
+        mContentReadySpan = ConversationRenderTrace.NO_SPAN;
+    }
+
     protected String getSdCardFilePath() {
         return "/sdcard/conv" + mConversation.id + ".html";
     }
@@ -732,6 +808,7 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
         mConversationContainer.invalidateSpacerGeometry();
 
         mAdapter.clear();
+        clearStaleHeights();
 
         // re-evaluate the message parts of the view state, since the messages may have changed
         // since the previous render
@@ -775,6 +852,7 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                 }
             } else {
                 // new messages that are not expanded default to being eligible for super-collapse
+                // (MessageBodyPreparer.isShownByDefault() mirrors this)
                 if (msg.starred || !msg.read || messageCursor.isLast()) {
                     expandedState = ExpansionState.EXPANDED;
                 } else if (messageCursor.isFirst()) {
@@ -873,12 +951,13 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
 
         // Measure item header and footer heights to allocate spacers in HTML
         // But since the views themselves don't exist yet, render each item temporarily into
-        // a host view for measurement.
-        final int headerPx = measureOverlayHeight(headerPos);
-        final int footerPx = measureOverlayHeight(footerPos);
+        // a host view for measurement, unless they were measured before.
+        final int headerPx = measureMessageOverlayHeight(headerItem);
+        final int footerPx = measureMessageOverlayHeight(mAdapter.getItem(footerPos));
 
-        mTemplates.appendMessageHtml(msg, expanded, safeForImages,
-                mWebView.screenPxToWebPx(headerPx), mWebView.screenPxToWebPx(footerPx));
+        mTemplates.appendMessageHtml(msg, MessageBodyPreparer.getBody(msg, safeForImages),
+                expanded, safeForImages, mWebView.screenPxToWebPx(headerPx),
+                mWebView.screenPxToWebPx(footerPx));
         timerMark("rendered message");
     }
 
@@ -904,8 +983,8 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                     alwaysShowImages || mViewState.getShouldShowImages(msg));
             final MessageFooterItem footer = mAdapter.newMessageFooterItem(mAdapter, header);
 
-            final int headerPx = measureOverlayHeight(header);
-            final int footerPx = measureOverlayHeight(footer);
+            final int headerPx = measureMessageOverlayHeight(header);
+            final int footerPx = measureMessageOverlayHeight(footer);
             error += mWebView.screenPxToWebPxError(headerPx)
                     + mWebView.screenPxToWebPxError(footerPx);
 
@@ -916,8 +995,9 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                 error -= 1;
             }
 
-            mTemplates.appendMessageHtml(msg, false /* expanded */,
-                    alwaysShowImages || msg.alwaysShowImages,
+            final boolean safeForImages = alwaysShowImages || msg.alwaysShowImages;
+            mTemplates.appendMessageHtml(msg, MessageBodyPreparer.getBody(msg, safeForImages),
+                    false /* expanded */, safeForImages,
                     mWebView.screenPxToWebPx(headerPx) + correction,
                     mWebView.screenPxToWebPx(footerPx));
             replacements.add(header);
@@ -965,6 +1045,89 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
         return heightPx;
     }
 
+    /**
+     * Like {@link #measureOverlayHeight(ConversationOverlayItem)}, but takes the height of a
+     * message header or footer from {@link OverlayHeightCache} when it has been measured before.
+     * Items given a cached height are measured again once the UI thread is idle, see
+     * {@link #scheduleRemeasureStaleHeights()}.
+     */
+    private int measureMessageOverlayHeight(ConversationOverlayItem convItem) {
+        final OverlayHeightCache.Key key = getOverlayHeightKey(convItem);
+        if (key == null) {
+            return measureOverlayHeight(convItem);
+        }
+        int heightPx = OverlayHeightCache.get(key);
+        if (heightPx >= 0) {
+            convItem.setHeight(heightPx);
+            convItem.markMeasurementValid();
+            mStaleHeightItems.add(convItem);
+            mStaleHeights.add(heightPx);
+        } else {
+            heightPx = measureOverlayHeight(convItem);
+            OverlayHeightCache.put(key, heightPx);
+        }
+        return heightPx;
+    }
+
+    private OverlayHeightCache.Key getOverlayHeightKey(ConversationOverlayItem convItem) {
+        return OverlayHeightCache.getKey(convItem, mConversationContainer.getWidth(),
+                getResources());
+    }
+
+    /**
+     * Measures the overlays whose heights may be stale once their new content has been drawn and
+     * the UI thread is idle, rather than before it.
+     */
+    private void scheduleRemeasureStaleHeights() {
+        if (!mStaleHeightsScheduled && !mStaleHeightItems.isEmpty()) {
+            mStaleHeightsScheduled = true;
+            Looper.myQueue().addIdleHandler(mStaleHeightsIdleHandler);
+        }
+    }
+
+    private void clearStaleHeights() {
+        mStaleHeightItems.clear();
+        mStaleHeights.clear();
+        if (mStaleHeightsScheduled) {
+            Looper.myQueue().removeIdleHandler(mStaleHeightsIdleHandler);
+            mStaleHeightsScheduled = false;
+        }
+    }
+
+    /**
+     * Measures an overlay whose height may be stale, updates its cached height and fixes its
+     * spacer if its height turned out to be different.
+     */
+    private void remeasureStaleHeight(ConversationOverlayItem item, int oldHeightPx) {
+        final int pos = item.getPosition();
+        if (pos >= mAdapter.getCount() || mAdapter.getItem(pos) != item) {
+            // The item was replaced since, and measured then
+            return;
+        }
+        final OverlayHeightCache.Key key = getOverlayHeightKey(item);
+        final int heightPx = measureOverlayHeight(item);
+        if (key != null) {
+            OverlayHeightCache.put(key, heightPx);
+        }
+        if (heightPx == oldHeightPx) {
+            return;
+        }
+        LogUtils.i(LAYOUT_TAG, "overlay height %dpx was stale, now %dpx: %s",
+                oldHeightPx, heightPx, item);
+        // Have the container re-bind and measure a view that is already showing the item
+        item.invalidateMeasurement();
+        if (item instanceof MessageHeaderItem) {
+            setMessageSpacerHeight((MessageHeaderItem) item, heightPx);
+        } else if (item instanceof MessageFooterItem) {
+            mConversationContainer.invalidateSpacerGeometry();
+            final ConversationMessage msg =
+                    ((MessageFooterItem) item).getHeaderItem().getMessage();
+            mWebView.loadUrl(String.format(
+                    "javascript:setMessageFooterSpacerHeight('%s', %s);",
+                    mTemplates.getMessageDomId(msg), mWebView.screenPxToWebPx(heightPx)));
+        }
+    }
+
     @Override
     public void onConversationViewHeaderHeightChange(int newHeight) {
         final int h = mWebView.screenPxToWebPx(newHeight);
@@ -1077,15 +1240,44 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
     }
 
     @Override
-    public void onSuperCollapsedClick(SuperCollapsedBlockItem item) {
+    public void onSuperCollapsedClick(final SuperCollapsedBlockItem item) {
         MessageCursor cursor = getMessageCursor();
-        if (cursor == null || !mViewsCreated) {
+        if (cursor == null || !mViewsCreated || mLoadingSuperCollapsedBlock != null) {
             return;
         }
 
+        // Load the bodies of the block's messages first, if the provider left them out
+        final List<ConversationMessage> pending =
+                cursor.getMessagesWithPendingBodies(item.getStart(), item.getEnd());
+        if (!pending.isEmpty()) {
+            mLoadingSuperCollapsedBlock = item;
+            loadMessageBodies(pending, new Runnable() {
+                @Override
+                public void run() {
+                    if (mLoadingSuperCollapsedBlock != item) {
+                        // the block stopped waiting for its bodies
+                        return;
+                    }
+                    mLoadingSuperCollapsedBlock = null;
+                    // the conversation may have been rendered again in the meantime
+                    final int pos = item.getPosition();
+                    if (pos < mAdapter.getCount() && mAdapter.getItem(pos) == item) {
+                        // bodies that failed to load are shown empty, and are tried again
+                        // when they are rendered again
+                        openSuperCollapsedBlock(getMessageCursor(), item);
+                    }
+                }
+            });
+            return;
+        }
+        openSuperCollapsedBlock(cursor, item);
+    }
+
+    private void openSuperCollapsedBlock(MessageCursor cursor, SuperCollapsedBlockItem item) {
         mTempBodiesHtml = renderCollapsedHeaders(cursor, item);
         mWebView.loadUrl("javascript:replaceSuperCollapsedBlock(" + item.getStart() + ")");
         mConversationContainer.focusFirstMessageHeader();
+        scheduleRemeasureStaleHeights();
     }
 
     private void showNewMessageNotification(NewMessagesInfo info) {
@@ -1123,7 +1315,9 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                     // This is separate from the typical JavaScript DOM change
                     // listeners because cases like NARROW_COLUMNS text reflow do not trigger DOM
                     // events.
-                    mWebView.loadUrl("javascript:measurePositions();");
+                    if (mWebView != null) {
+                        mWebView.loadUrl("javascript:measurePositions();");
+                    }
                 }
             };
         }
@@ -1308,7 +1502,9 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
             // Ignore unsafe calls made after a fragment is detached from an activity.
             // This method needs to, for example, get at the loader manager, which needs
             // the fragment to be added.
-            if (!isAdded() || !mViewsCreated) {
+            // Also ignore any page that finished before the conversation was loaded, e.g. the
+            // blank page of a pooled WebView.
+            if (!isAdded() || !mViewsCreated || !mWebViewLoadedData || view != mWebView) {
                 LogUtils.d(LOG_TAG, "ignoring CVF.onPageFinished, url=%s fragment=%s", url,
                         ConversationViewFragment.this);
                 return;
@@ -1317,6 +1513,8 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
             LogUtils.d(LOG_TAG, "IN CVF.onPageFinished, url=%s fragment=%s wv=%s t=%sms", url,
                     ConversationViewFragment.this, view,
                     (SystemClock.uptimeMillis() - mWebViewLoadStartMs));
+            ConversationRenderTrace.end(mLoadDataSpan);
+            mLoadDataSpan = ConversationRenderTrace.NO_SPAN;
 
             ensureContentSizeChangeListener();
 
@@ -1324,6 +1522,10 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                 revealConversation();
             }
 
+            loadRenderedMessageBodies();
+
+            scheduleRemeasureStaleHeights();
+
             final Set<String> emailAddresses = Sets.newHashSet();
             final List<Address> cacheCopy;
             synchronized (mAddressCache) {
@@ -1407,7 +1609,8 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                 while (cursor.moveToPosition(++pos)) {
                     final ConversationMessage msg = cursor.getMessage();
                     if (TextUtils.equals(domId, mTemplates.getMessageDomId(msg))) {
-                        return HtmlConversationTemplates.wrapMessageBody(msg.getBodyAsHtml());
+                        return HtmlConversationTemplates.wrapMessageBody(
+                                MessageBodyPreparer.getBody(msg, true /* safeForImages */));
                     }
                 }
 
@@ -1463,6 +1666,8 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                                         isUserVisible(),
                                         (SystemClock.uptimeMillis() - mWebViewLoadStartMs));
                             }
+                            ConversationRenderTrace.end(mContentReadySpan);
+                            mContentReadySpan = ConversationRenderTrace.NO_SPAN;
                             revealConversation();
                         } catch (Throwable t) {
                             LogUtils.e(LOG_TAG, t, "Error in MailJsBridge.onContentReady");
@@ -1549,6 +1754,10 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
          */
 
         if (oldCursor != null && !oldCursor.isClosed()) {
+            // keep the bodies that were loaded for the old cursor, so that they aren't seen as
+            // changed, or loaded again
+            newCursor.copyLoadedBodies(oldCursor);
+
             final NewMessagesInfo info = getNewIncomingMessagesInfo(newCursor);
 
             if (info.count > 0) {
@@ -1573,17 +1782,12 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                             + ", ignoring this conversation update (%s)", this);
                 }
                 return;
-            } else if (info.countFromSelf == 1) {
-                // Special-case the very common case of a new cursor that is the same as the old
-                // one, except that there is a new message from yourself. This happens upon send.
-                final boolean sameExceptNewLast = newCursor.getStateHashCode(1) == oldState;
-                if (sameExceptNewLast) {
-                    LogUtils.i(LOG_TAG, "CONV RENDER: update is a single new message from self"
-                            + " (%s)", this);
-                    newCursor.moveToLast();
-                    processNewOutgoingMessage(newCursor.getMessage());
-                    return;
-                }
+            } else if (processMessageChanges(newCursor, oldCursor)) {
+                // The common cases of a new message from yourself, which happens upon send, or
+                // a discarded draft, are applied without rendering the whole conversation again.
+                LogUtils.i(LOG_TAG, "CONV RENDER: applied added/removed message(s) in place"
+                        + " (%s)", this);
+                return;
             }
             // cursors are different, and not due to an incoming message. fall
             // through and render.
@@ -1639,20 +1843,29 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
         return info;
     }
 
+    /**
+     * Updates the messages that are in both cursors, matched by id, in place.
+     */
     private boolean processInPlaceUpdates(MessageCursor newCursor, MessageCursor oldCursor) {
         final Set<String> idsOfChangedBodies = Sets.newHashSet();
         final List<Integer> changedOverlayPositions = Lists.newArrayList();
 
         boolean changed = false;
 
-        int pos = 0;
-        while (true) {
-            if (!newCursor.moveToPosition(pos) || !oldCursor.moveToPosition(pos)) {
-                break;
-            }
+        final Map<Long, ConversationMessage> oldMessages = Maps.newHashMap();
+        int pos = -1;
+        while (oldCursor.moveToPosition(++pos)) {
+            final ConversationMessage oldMsg = oldCursor.getMessage();
+            oldMessages.put(oldMsg.id, oldMsg);
+        }
 
+        pos = -1;
+        while (newCursor.moveToPosition(++pos)) {
             final ConversationMessage newMsg = newCursor.getMessage();
-            final ConversationMessage oldMsg = oldCursor.getMessage();
+            final ConversationMessage oldMsg = oldMessages.get(newMsg.id);
+            if (oldMsg == null) {
+                continue;
+            }
 
             // We are going to update the data in the adapter whenever any input fields change.
             // This ensures that the Message object that ComposeActivity uses will be correctly
@@ -1670,15 +1883,21 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
                 idsOfChangedBodies.add('"' + mTemplates.getMessageDomId(newMsg) + '"');
                 LogUtils.i(LOG_TAG, "msg #%d (%d): detected body change", pos, newMsg.id);
             }
-
-            pos++;
         }
 
-
         if (!changedOverlayPositions.isEmpty()) {
             // notify once after the entire adapter is updated
             mConversationContainer.onOverlayModelUpdate(changedOverlayPositions);
             changed = true;
+
+            // the changes may have changed the heights of the overlays, e.g. with an attachment
+            // that was added to a draft, so measure them again and fix their spacers
+            for (Integer i : changedOverlayPositions) {
+                final ConversationOverlayItem item = mAdapter.getItem(i);
+                mStaleHeightItems.add(item);
+                mStaleHeights.add(item.getHeight());
+            }
+            scheduleRemeasureStaleHeights();
         }
 
         final ConversationFooterItem footerItem = mAdapter.getFooterItem();
@@ -1694,9 +1913,76 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
         return changed;
     }
 
-    private void processNewOutgoingMessage(ConversationMessage msg) {
+    /**
+     * Applies the messages that were added to the end of the conversation, and those that were
+     * removed from it, without rendering the conversation again. The messages that are in both
+     * cursors, matched by id, are then updated in place.
+     *
+     * @return false if the cursors differ in any other way, e.g. in the order of their messages,
+     *     so that the conversation has to be rendered again
+     */
+    private boolean processMessageChanges(MessageCursor newCursor, MessageCursor oldCursor) {
+        if (mLoadingSuperCollapsedBlock != null || newCursor.getCount() == 0) {
+            return false;
+        }
+
+        final Map<Long, Integer> newPositions = Maps.newHashMap();
+        int pos = -1;
+        while (newCursor.moveToPosition(++pos)) {
+            newPositions.put(newCursor.getMessage().id, pos);
+        }
+
+        // The remaining messages must keep their order, and come before the added ones
+        final List<ConversationMessage> removed = Lists.newArrayList();
+        int nextPos = 0;
+        pos = -1;
+        while (oldCursor.moveToPosition(++pos)) {
+            final ConversationMessage oldMsg = oldCursor.getMessage();
+            final Integer newPos = newPositions.get(oldMsg.id);
+            if (newPos == null) {
+                removed.add(oldMsg);
+                continue;
+            }
+            if (newPos != nextPos || !newCursor.moveToPosition(newPos)
+                    || !Objects.equal(newCursor.getMessage().uri, oldMsg.uri)) {
+                return false;
+            }
+            nextPos++;
+        }
+        final List<ConversationMessage> added = Lists.newArrayList();
+        while (newCursor.moveToPosition(nextPos++)) {
+            added.add(newCursor.getMessage());
+        }
+        if (removed.isEmpty() && added.isEmpty()) {
+            // Only the state of some messages changed, e.g. the attachments of a draft
+            return processInPlaceUpdates(newCursor, oldCursor);
+        }
+
+        if (!removed.isEmpty()) {
+            // A removed message has to have its own header, and there can't be a super-collapsed
+            // block after it, since the positions of the messages in the block change.
+            int firstRemovedHeader = Integer.MAX_VALUE;
+            for (ConversationMessage msg : removed) {
+                final MessageHeaderItem header = getMessageHeaderItem(msg);
+                if (header == null) {
+                    return false;
+                }
+                firstRemovedHeader = Math.min(firstRemovedHeader, header.getPosition());
+            }
+            for (int i = firstRemovedHeader + 1, count = mAdapter.getCount(); i < count; i++) {
+                if (mAdapter.getItem(i) instanceof SuperCollapsedBlockItem) {
+                    return false;
+                }
+            }
+            // The last message is always shown with its header
+            if (added.isEmpty() && newCursor.moveToLast()
+                    && getMessageHeaderItem(newCursor.getMessage()) == null) {
+                return false;
+            }
+        }
+
         // Temporarily remove the ConversationFooterItem and its view.
-        // It will get re-added right after the new message is added.
+        // It will get re-added right after the new messages are added.
         final ConversationFooterItem footerItem = mAdapter.removeFooterItem();
         // if no footer, just skip the work for it. The rest should be fine to do.
         if (footerItem != null) {
@@ -1705,12 +1991,28 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
             LogUtils.i(LOG_TAG, "footer item not found");
         }
 
-        mTemplates.reset();
-        // this method will add some items to mAdapter, but we deliberately want to avoid notifying
-        // adapter listeners (i.e. ConversationContainer) until onWebContentGeometryChange is next
-        // called, to prevent N+1 headers rendering with N message bodies.
-        renderMessage(msg, true /* expanded */, msg.alwaysShowImages);
-        mTempBodiesHtml = mTemplates.emit();
+        final List<String> removedDomIds = Lists.newArrayList();
+        if (!removed.isEmpty()) {
+            mAdapter.removeItemsForMessages(removed);
+            for (ConversationMessage msg : removed) {
+                removedDomIds.add('"' + mTemplates.getMessageDomId(msg) + '"');
+                LogUtils.i(LOG_TAG, "msg (%d): removed in place", msg.id);
+            }
+        }
+
+        if (!added.isEmpty()) {
+            mTemplates.reset();
+            // this will add some items to mAdapter, but we deliberately want to avoid notifying
+            // adapter listeners (i.e. ConversationContainer) until onWebContentGeometryChange is
+            // next called, to prevent N+1 headers rendering with N message bodies.
+            for (ConversationMessage msg : added) {
+                renderMessage(msg, true /* expanded */, msg.alwaysShowImages);
+                mViewState.setExpansionState(msg, ExpansionState.EXPANDED);
+                // FIXME: should the provider set this as initial state?
+                mViewState.setReadState(msg, false /* read */);
+            }
+            mTempBodiesHtml = mTemplates.emit();
+        }
 
         if (footerItem != null) {
             footerItem.setLastMessageHeaderItem(getLastMessageHeaderItem());
@@ -1718,15 +2020,30 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
             mAdapter.addItem(footerItem);
         }
 
-        mViewState.setExpansionState(msg, ExpansionState.EXPANDED);
-        // FIXME: should the provider set this as initial state?
-        mViewState.setReadState(msg, false /* read */);
-
         // From now until the updated spacer geometry is returned, the adapter items are mismatched
         // with the existing spacers. Do not let them layout.
         mConversationContainer.invalidateSpacerGeometry();
+        if (!removed.isEmpty()) {
+            // the positions of the items after the removed ones have changed, so recycle the
+            // views of all items
+            mAdapter.notifyDataSetChanged();
+        }
 
-        mWebView.loadUrl("javascript:appendMessageHtml();");
+        mWebView.loadUrl(String.format("javascript:removeAndAppendMessages([%s], %s);",
+                TextUtils.join(",", removedDomIds), !added.isEmpty()));
+
+        processInPlaceUpdates(newCursor, oldCursor);
+        return true;
+    }
+
+    private MessageHeaderItem getMessageHeaderItem(ConversationMessage msg) {
+        for (int i = 0, count = mAdapter.getCount(); i < count; i++) {
+            final ConversationOverlayItem item = mAdapter.getItem(i);
+            if (item instanceof MessageHeaderItem && item.belongsToMessage(msg)) {
+                return (MessageHeaderItem) item;
+            }
+        }
+        return null;
     }
 
     private static class SetCookieTask extends AsyncTask<Void, Void, Void> {
@@ -1810,10 +2127,89 @@ public class ConversationViewFragment extends AbstractConversationViewFragment i
 
     @Override
     protected void printConversation() {
-        PrintUtils.printConversation(mActivity.getActivityContext(), getMessageCursor(),
+        final MessageCursor cursor = getMessageCursor();
+        if (cursor == null) {
+            return;
+        }
+        // All messages are printed, including the ones in super-collapsed blocks
+        final List<ConversationMessage> pending =
+                cursor.getMessagesWithPendingBodies(0, cursor.getCount() - 1);
+        if (!pending.isEmpty()) {
+            loadMessageBodies(pending, new Runnable() {
+                @Override
+                public void run() {
+                    // bodies that failed to load are printed empty rather than tried again
+                    printConversation(getMessageCursor());
+                }
+            });
+            return;
+        }
+        printConversation(cursor);
+    }
+
+    private void printConversation(MessageCursor cursor) {
+        PrintUtils.printConversation(mActivity.getActivityContext(), cursor,
                 mAddressCache, mConversation.getBaseUri(mBaseUri), true /* useJavascript */);
     }
 
+    @Override
+    protected boolean loadsMessageBodiesLazily() {
+        return true;
+    }
+
+    /**
+     * Loads the pending bodies of the given messages in the background, see
+     * {@link MessageCursor#getMessagesWithPendingBodies(int, int)}, and then runs the given
+     * runnable unless the views or the messages have gone away in the meantime. In that case
+     * a super-collapsed block that was waiting for its bodies stops waiting.
+     */
+    private void loadMessageBodies(List<ConversationMessage> messages, final Runnable onLoaded) {
+        new MessageBodyLoadTask(mActivity.getActivityContext().getContentResolver(), messages,
+                new MessageBodyLoadTask.Callback() {
+                    @Override
+                    public void onBodiesLoaded(long[] ids, String[] html, String[] text) {
+                        final MessageCursor cursor = getMessageCursor();
+                        if (!mViewsCreated || cursor == null) {
+                            mLoadingSuperCollapsedBlock = null;
+                            return;
+                        }
+                        cursor.setLoadedBodies(ids, html, text);
+                        onLoaded.run();
+                    }
+                }).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, (Void[]) null);
+    }
+
+    /**
+     * Loads the pending bodies of the messages that have been rendered, collapsed or expanded,
+     * and replaces their empty bodies in the page.
+     */
+    private void loadRenderedMessageBodies() {
+        final List<ConversationMessage> pending = Lists.newArrayList();
+        for (int i = 0, size = mAdapter.getCount(); i < size; i++) {
+            final ConversationOverlayItem item = mAdapter.getItem(i);
+            if (item instanceof MessageHeaderItem) {
+                final ConversationMessage msg = ((MessageHeaderItem) item).getMessage();
+                if (msg.isBodyPending()) {
+                    pending.add(msg);
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<String> domIds = Lists.newArrayListWithCapacity(pending.size());
+        for (ConversationMessage msg : pending) {
+            domIds.add('"' + mTemplates.getMessageDomId(msg) + '"');
+        }
+        loadMessageBodies(pending, new Runnable() {
+            @Override
+            public void run() {
+                mWebView.loadUrl(String.format("javascript:replaceMessageBodies([%s]);",
+                        TextUtils.join(",", domIds)));
+            }
+        });
+    }
+
     @Override
     protected void handleReply() {
         final MessageHeaderItem item = getLastMessageHeaderItem();
@@ -893,6 +893,11 @@ public class FolderListFragment extends ListFragment implements
         private ObjectCursor<Folder> mCursor = null;
         /** Cursor into the all folder list. This might be null. */
         private ObjectCursor<Folder> mAllFolderListCursor = null;
+        /**
+         * Positions in {@link #mItemList} of the items built from {@link #mCursor}, in cursor
+         * order. Null if the list was not built from a valid cursor.
+         */
+        private int[] mCursorItemPositions = null;
 
         /**
          * Creates a {@link FolderAdapter}. This is a list of all the accounts and folders.
@@ -1009,6 +1014,7 @@ public class FolderListFragment extends ListFragment implements
          */
         private List<DrawerItem> recalculateListFolders() {
             final List<DrawerItem> itemList = new ArrayList<>();
+            mCursorItemPositions = null;
             // If we are waiting for folder initialization, we don't have any kinds of folders,
             // just the "Waiting for initialization" item. Note, this should only be done
             // when we're waiting for account initialization or initial sync.
@@ -1032,9 +1038,13 @@ public class FolderListFragment extends ListFragment implements
         private List<DrawerItem> recalculateFlatListFolders(List<DrawerItem> itemList) {
             final List<DrawerItem> inboxFolders = new ArrayList<>();
             final List<DrawerItem> allFoldersList = new ArrayList<>();
+            final int[] cursorOrder = new int[mCursor.getCount()];
+            int cursorItemCount = 0;
             do {
                 final Folder f = mCursor.getModel();
                 if (!isFolderTypeExcluded(f)) {
+                    cursorOrder[cursorItemCount++] =
+                            f.isInbox() ? inboxFolders.size() : ~allFoldersList.size();
                     // Prioritize inboxes
                     if (f.isInbox()) {
                         inboxFolders.add(DrawerItem.ofFolder(
@@ -1047,6 +1057,8 @@ public class FolderListFragment extends ListFragment implements
             } while (mCursor.moveToNext());
             itemList.addAll(inboxFolders);
             itemList.addAll(allFoldersList);
+            recordCursorItemPositions(itemList, inboxFolders, allFoldersList, cursorOrder,
+                    cursorItemCount);
             return itemList;
         }
 
@@ -1055,9 +1067,13 @@ public class FolderListFragment extends ListFragment implements
         private List<DrawerItem> recalculateDividedListFolders(List<DrawerItem> itemList) {
             final List<DrawerItem> allFoldersList = new ArrayList<>();
             final List<DrawerItem> inboxFolders = new ArrayList<>();
+            final int[] cursorOrder = new int[mCursor.getCount()];
+            int cursorItemCount = 0;
             do {
                 final Folder f = mCursor.getModel();
                 if (!isFolderTypeExcluded(f)) {
+                    cursorOrder[cursorItemCount++] =
+                            f.isInbox() ? inboxFolders.size() : ~allFoldersList.size();
                     if (f.isInbox()) {
                         inboxFolders.add(DrawerItem.ofFolder(
                                 mActivity, f, DrawerItem.FOLDER_INBOX));
@@ -1068,7 +1084,29 @@ public class FolderListFragment extends ListFragment implements
                 }
             } while (mCursor.moveToNext());
 
-            // If we have the all folder list, verify that the current folder exists
+            checkCurrentFolderPresent();
+
+            mInboxPresent = (inboxFolders.size() > 0);
+
+            // Add all inboxes (sectioned Inboxes included) before recent folders.
+            addFolderDivision(itemList, inboxFolders, BLANK_HEADER_RESOURCE);
+
+            // Add recent folders next.
+            addRecentsToList(itemList);
+
+            // Add the remaining folders.
+            addFolderDivision(itemList, allFoldersList, R.string.all_folders_heading);
+
+            recordCursorItemPositions(itemList, inboxFolders, allFoldersList, cursorOrder,
+                    cursorItemCount);
+            return itemList;
+        }
+
+        /**
+         * If we have the all folder list, verifies that the current folder still exists, and
+         * changes to the current account again if it has disappeared.
+         */
+        private void checkCurrentFolderPresent() {
             boolean currentFolderFound = false;
             if (mAllFolderListCursor != null) {
                 final String folderName = mSelectedFolderUri.toString();
@@ -1098,19 +1136,105 @@ public class FolderListFragment extends ListFragment implements
                     changeAccount(mCurrentAccount);
                 }
             }
+        }
 
-            mInboxPresent = (inboxFolders.size() > 0);
+        /**
+         * Remembers where each folder from {@link #mCursor} ended up in the item list, so that
+         * a later cursor with the same folders can update those items in place.
+         *
+         * @param itemList the complete list of drawer items
+         * @param inboxFolders the inbox items, as added to the item list
+         * @param otherFolders the non-inbox items, as added to the item list
+         * @param cursorOrder for each non-excluded folder in cursor order, its index into
+         *                    inboxFolders, or the complement of its index into otherFolders
+         * @param count the number of valid entries in cursorOrder
+         */
+        private void recordCursorItemPositions(List<DrawerItem> itemList,
+                List<DrawerItem> inboxFolders, List<DrawerItem> otherFolders, int[] cursorOrder,
+                int count) {
+            final int inboxOffset = inboxFolders.isEmpty() ? 0 :
+                    itemList.indexOf(inboxFolders.get(0));
+            final int otherOffset = otherFolders.isEmpty() ? 0 :
+                    itemList.indexOf(otherFolders.get(0));
+            final int[] positions = new int[count];
+            for (int i = 0; i < count; i++) {
+                final int index = cursorOrder[i];
+                positions[i] = index >= 0 ? inboxOffset + index : otherOffset + ~index;
+            }
+            mCursorItemPositions = positions;
+        }
 
-            // Add all inboxes (sectioned Inboxes included) before recent folders.
-            addFolderDivision(itemList, inboxFolders, BLANK_HEADER_RESOURCE);
+        /**
+         * Updates the folder items from {@link #mCursor} without rebuilding the list, if the
+         * cursor holds the same folders in the same order as the one the list was built from.
+         * This is the common case while syncing, where only unread counts change. Only the items
+         * whose display changed are replaced, and only their visible views are rebound.
+         *
+         * @return true if the items were updated, false if the list needs a full rebuild.
+         */
+        private boolean updateFolderItemsInPlace() {
+            final int[] positions = mCursorItemPositions;
+            if (positions == null || isCursorInvalid()) {
+                return false;
+            }
+            int count = 0;
+            do {
+                final Folder f = mCursor.getModel();
+                if (isFolderTypeExcluded(f)) {
+                    continue;
+                }
+                if (count >= positions.length) {
+                    return false;
+                }
+                final Folder old = mItemList.get(positions[count]).mFolder;
+                if (old.id != f.id || old.isInbox() != f.isInbox()) {
+                    return false;
+                }
+                count++;
+            } while (mCursor.moveToNext());
+            if (count != positions.length) {
+                return false;
+            }
 
-            // Add recent folders next.
-            addRecentsToList(itemList);
+            mCursor.moveToFirst();
+            count = 0;
+            do {
+                final Folder f = mCursor.getModel();
+                if (isFolderTypeExcluded(f)) {
+                    continue;
+                }
+                final int position = positions[count++];
+                final DrawerItem old = mItemList.get(position);
+                if (!isSameFolderItem(old.mFolder, f)) {
+                    mItemList.set(position, DrawerItem.ofFolder(mActivity, f, old.mItemCategory));
+                    rebindVisibleItem(position);
+                }
+            } while (mCursor.moveToNext());
+            return true;
+        }
 
-            // Add the remaining folders.
-            addFolderDivision(itemList, allFoldersList, R.string.all_folders_heading);
+        /**
+         * Returns true if the two folders lead to identical drawer items.
+         */
+        private boolean isSameFolderItem(Folder a, Folder b) {
+            return FolderItemView.areSameViews(a, b) && a.iconResId == b.iconResId
+                    && a.type == b.type && TextUtils.equals(a.bgColor, b.bgColor);
+        }
 
-            return itemList;
+        /**
+         * Rebinds the view for the item at the given adapter position, if it is on screen.
+         */
+        private void rebindVisibleItem(int position) {
+            if (mListView == null) {
+                return;
+            }
+            final int listPosition = (mAccountsAdapter != null ? mAccountsAdapter.getCount() : 0)
+                    + mHeaderAdapter.getCount() + position + mListView.getHeaderViewsCount();
+            final int firstVisible = mListView.getFirstVisiblePosition();
+            if (listPosition >= firstVisible
+                    && listPosition <= mListView.getLastVisiblePosition()) {
+                getView(position, mListView.getChildAt(listPosition - firstVisible), mListView);
+            }
         }
 
         /**
@@ -1177,7 +1301,12 @@ public class FolderListFragment extends ListFragment implements
         public void setCursor(ObjectCursor<Folder> cursor) {
             mCursor = cursor;
             rebuildAccountList();
-            rebuildFolderList();
+            if (!updateFolderItemsInPlace()) {
+                rebuildFolderList();
+            } else if (mIsDivided) {
+                // A full rebuild of the divided list would have checked this
+                checkCurrentFolderPresent();
+            }
         }
 
         @Override
@@ -129,13 +129,38 @@ public class HtmlConversationTemplates extends AbstractHtmlTemplates {
 
     public void appendMessageHtml(HtmlMessage message, boolean isExpanded,
             boolean safeForImages, int headerHeight, int footerHeight) {
+        String body = message.getBodyAsHtml();
+        if (shouldReplaceAbsoluteImgUrls(message, safeForImages)) {
+            body = replaceAbsoluteImgUrls(body);
+        }
+        appendMessageHtml(message, body, isExpanded, safeForImages, headerHeight, footerHeight);
+    }
+
+    /**
+     * Appends a message whose body has already been prepared, i.e. had
+     * {@link #replaceAbsoluteImgUrls(String)} applied if
+     * {@link #shouldReplaceAbsoluteImgUrls(HtmlMessage, boolean)}.
+     */
+    public void appendMessageHtml(HtmlMessage message, String body, boolean isExpanded,
+            boolean safeForImages, int headerHeight, int footerHeight) {
 
         final String bodyDisplay = isExpanded ? "block" : "none";
         final String expandedClass = isExpanded ? "expanded" : "";
         final String showImagesClass = safeForImages ? "mail-show-images" : "";
 
-        String body = message.getBodyAsHtml();
+        append(sMessage,
+                getMessageDomId(message),
+                expandedClass,
+                headerHeight,
+                showImagesClass,
+                bodyDisplay,
+                wrapMessageBody(body),
+                bodyDisplay,
+                footerHeight
+        );
+    }
 
+    static boolean shouldReplaceAbsoluteImgUrls(HtmlMessage message, boolean safeForImages) {
         /* Work around a WebView bug (5522414) in setBlockNetworkImage that causes img onload event
          * handlers to fire before an image is loaded.
          * WebView will report bad dimensions when revealing inline images with absolute URLs, but
@@ -150,20 +175,7 @@ public class HtmlConversationTemplates extends AbstractHtmlTemplates {
          * URLs) and any false negatives that the regex misses. This maintains overall security
          * level by not relying solely on the regex.
          */
-        if (!safeForImages && message.embedsExternalResources()) {
-            body = replaceAbsoluteImgUrls(body);
-        }
-
-        append(sMessage,
-                getMessageDomId(message),
-                expandedClass,
-                headerHeight,
-                showImagesClass,
-                bodyDisplay,
-                wrapMessageBody(body),
-                bodyDisplay,
-                footerHeight
-        );
+        return !safeForImages && message.embedsExternalResources();
     }
 
     public String getMessageDomId(HtmlMessage msg) {
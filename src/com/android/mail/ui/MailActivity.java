@@ -26,6 +26,7 @@ import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 import android.nfc.NfcAdapter;
 import android.nfc.NfcEvent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.ActionBar;
 import android.support.v7.view.ActionMode;
@@ -42,6 +43,7 @@ import com.android.mail.R;
 import com.android.mail.analytics.Analytics;
 import com.android.mail.analytics.AnalyticsTimer;
 import com.android.mail.bitmap.ContactResolver;
+import com.android.mail.browse.ConversationItemView;
 import com.android.mail.compose.ComposeActivity;
 import com.android.mail.providers.Account;
 import com.android.mail.providers.Folder;
@@ -169,6 +171,7 @@ public class MailActivity extends AbstractMailActivity implements ControllableAc
         }
 
         resetSenderImageCache();
+        warmUpConversationListResources();
         mViewMode = new ViewMode();
         final boolean tabletUi = Utils.useTabletUI(this.getResources());
         mController = ControllerFactory.forActivity(this, mViewMode, tabletUi);
@@ -215,6 +218,20 @@ public class MailActivity extends AbstractMailActivity implements ControllableAc
         }
     }
 
+    /**
+     * Loads the resources shared by all conversation list rows on a background thread, so that
+     * the first frame of the conversation list doesn't have to decode them on the UI thread.
+     */
+    private void warmUpConversationListResources() {
+        final Context appContext = getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                ConversationItemView.warmUpResources(appContext);
+            }
+        });
+    }
+
     @Override
     protected void onPostCreate(Bundle savedInstanceState) {
         super.onPostCreate(savedInstanceState);
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.ui;
+
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import com.android.mail.browse.ConversationMessage;
+import com.android.mail.browse.MessageCursor;
+import com.android.mail.utils.LogTag;
+import com.android.mail.utils.LogUtils;
+import com.android.mail.utils.PlainTextLinkifier;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares the HTML of message bodies for conversation view, so that rendering a conversation
+ * only has to splice the prepared bodies together. Preparing a body means converting a plain-text
+ * body to linkified HTML (see {@link com.android.mail.providers.Message#getBodyAsHtml()}), and
+ * blocking its absolute image URLs unless images are to be shown (see
+ * {@link HtmlConversationTemplates#shouldReplaceAbsoluteImgUrls}).
+ * <p>
+ * {@link #prepare(MessageCursor)} prepares the bodies of a cursor on a small pool of threads when
+ * the cursor is loaded, waiting only for the ones that are shown right away. Prepared bodies are
+ * cached by message id, state hash code and contents, so
+ * {@link #getBody(ConversationMessage, boolean)} only prepares a body when it was not prepared
+ * that way before, e.g. for a body that was loaded on demand.
+ */
+final class MessageBodyPreparer {
+    private static final String LOG_TAG = LogTag.getLogTag();
+
+    private static final int POOL_SIZE =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** The number of chars of prepared bodies to keep, roughly 2MB. */
+    private static final int MAX_CACHED_CHARS = 1024 * 1024;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(POOL_SIZE,
+            POOL_SIZE, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "MessageBodyPreparer #" + mCount.getAndIncrement());
+                }
+            });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final LruCache<Key, String> sBodies =
+            new LruCache<Key, String>(MAX_CACHED_CHARS) {
+                @Override
+                protected int sizeOf(Key key, String body) {
+                    return body.length() + 1;
+                }
+            };
+
+    private MessageBodyPreparer() {}
+
+    /**
+     * Prepares the bodies of the messages in the cursor that are not pending. Blocks until the
+     * messages that conversation view expands or collapses by default are prepared, so it must
+     * not be called on the UI thread, and the cursor must not be used by any other thread
+     * meanwhile. The bodies of messages that start out in a super-collapsed block are prepared
+     * in the background afterwards, from copies of their bodies, so they are usually ready by the
+     * time the block is opened.
+     */
+    static void prepare(MessageCursor cursor) {
+        final List<ConversationMessage> shown = Lists.newArrayList();
+        final List<Runnable> hidden = Lists.newArrayList();
+        final int count = cursor.getCount();
+        int pos = -1;
+        while (cursor.moveToPosition(++pos)) {
+            final ConversationMessage msg = cursor.getMessage();
+            final Key key = getKey(msg, false /* blockImages */);
+            if (msg.isBodyPending() || sBodies.get(key) != null) {
+                continue;
+            }
+            if (isShownByDefault(msg, pos, count)) {
+                shown.add(msg);
+            } else {
+                hidden.add(new DetachedBody(msg, key));
+            }
+        }
+
+        final List<Future<?>> futures = Lists.newArrayListWithCapacity(shown.size());
+        for (final ConversationMessage msg : shown) {
+            futures.add(EXECUTOR.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final String body = prepareBody(msg);
+                    if (!msg.alwaysShowImages && msg.embedsExternalResources()) {
+                        prepareBlockedBody(msg, body);
+                    }
+                    return null;
+                }
+            }));
+        }
+        // Queued behind the shown bodies, and not waited for
+        for (final Runnable task : hidden) {
+            EXECUTOR.execute(task);
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            // The load was cancelled. Whatever isn't prepared yet is prepared when it is rendered.
+            for (Future<?> future : futures) {
+                future.cancel(false /* mayInterruptIfRunning */);
+            }
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LogUtils.w(LOG_TAG, e.getCause(), "Error preparing message bodies");
+        }
+    }
+
+    /**
+     * @return whether conversation view renders the message outside of a super-collapsed block
+     *     when the conversation has no saved view state
+     */
+    private static boolean isShownByDefault(ConversationMessage msg, int pos, int count) {
+        return msg.starred || !msg.read || pos == 0 || pos == count - 1;
+    }
+
+    /**
+     * @return the body of the message to render, with its absolute image URLs blocked unless it
+     *     is safe for images
+     */
+    static String getBody(ConversationMessage msg, boolean safeForImages) {
+        final boolean blockImages =
+                HtmlConversationTemplates.shouldReplaceAbsoluteImgUrls(msg, safeForImages);
+        final String cached = sBodies.get(getKey(msg, blockImages));
+        if (cached != null) {
+            return cached;
+        }
+        final String body = prepareBody(msg);
+        return blockImages ? prepareBlockedBody(msg, body) : body;
+    }
+
+    private static String prepareBody(ConversationMessage msg) {
+        final Key key = getKey(msg, false /* blockImages */);
+        String body = sBodies.get(key);
+        if (body == null) {
+            body = msg.getBodyAsHtml();
+            put(msg, key, body);
+        }
+        return body;
+    }
+
+    private static String prepareBlockedBody(ConversationMessage msg, String body) {
+        final String blocked = HtmlConversationTemplates.replaceAbsoluteImgUrls(body);
+        put(msg, getKey(msg, true /* blockImages */), blocked);
+        return blocked;
+    }
+
+    private static void put(ConversationMessage msg, Key key, String body) {
+        // A pending body is only empty until it is loaded
+        if (!msg.isBodyPending()) {
+            sBodies.put(key, body);
+        }
+    }
+
+    private static Key getKey(ConversationMessage msg, boolean blockImages) {
+        return new Key(msg.id, msg.getStateHashCode(), Objects.hashCode(msg.bodyHtml, msg.bodyText),
+                length(msg.bodyHtml), length(msg.bodyText), blockImages);
+    }
+
+    private static int length(String s) {
+        return s != null ? s.length() : -1;
+    }
+
+    /**
+     * Prepares a body from a copy of the message's body and key taken on the loader thread, so
+     * that it never touches the message while conversation view is using it.
+     */
+    private static final class DetachedBody implements Runnable {
+        private final Key mKey;
+        private final Key mBlockedKey;
+        private final String mBodyHtml;
+        private final String mBodyText;
+
+        DetachedBody(ConversationMessage msg, Key key) {
+            mKey = key;
+            mBlockedKey = !msg.alwaysShowImages && msg.embedsExternalResources()
+                    ? key.withBlockImages() : null;
+            mBodyHtml = msg.bodyHtml;
+            mBodyText = msg.bodyText;
+        }
+
+        @Override
+        public void run() {
+            // The same body as Message#getBodyAsHtml()
+            final String body;
+            if (!TextUtils.isEmpty(mBodyHtml)) {
+                body = mBodyHtml;
+            } else if (!TextUtils.isEmpty(mBodyText)) {
+                body = PlainTextLinkifier.toHtml(mBodyText);
+            } else {
+                body = "";
+            }
+            sBodies.put(mKey, body);
+            if (mBlockedKey != null) {
+                sBodies.put(mBlockedKey, HtmlConversationTemplates.replaceAbsoluteImgUrls(body));
+            }
+        }
+    }
+
+    /**
+     * Identifies a prepared body. The body hash is backed up by the lengths of the HTML and text
+     * bodies, so that a colliding hash alone can't hand out another version of the body.
+     */
+    private static final class Key {
+        private final long mMessageId;
+        private final int mStateHash;
+        private final int mBodyHash;
+        private final int mHtmlLength;
+        private final int mTextLength;
+        private final boolean mBlockImages;
+
+        Key(long messageId, int stateHash, int bodyHash, int htmlLength, int textLength,
+                boolean blockImages) {
+            mMessageId = messageId;
+            mStateHash = stateHash;
+            mBodyHash = bodyHash;
+            mHtmlLength = htmlLength;
+            mTextLength = textLength;
+            mBlockImages = blockImages;
+        }
+
+        Key withBlockImages() {
+            return new Key(mMessageId, mStateHash, mBodyHash, mHtmlLength, mTextLength, true);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mMessageId == other.mMessageId && mStateHash == other.mStateHash
+                    && mBodyHash == other.mBodyHash && mHtmlLength == other.mHtmlLength
+                    && mTextLength == other.mTextLength && mBlockImages == other.mBlockImages;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(mMessageId, mStateHash, mBodyHash, mHtmlLength, mTextLength,
+                    mBlockImages);
+        }
+    }
+}
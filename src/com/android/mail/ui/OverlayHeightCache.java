@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.ui;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.util.LruCache;
+
+import com.android.mail.browse.ConversationMessage;
+import com.android.mail.browse.ConversationOverlayItem;
+import com.android.mail.browse.ConversationViewAdapter;
+import com.android.mail.browse.ConversationViewAdapter.MessageFooterItem;
+import com.android.mail.browse.ConversationViewAdapter.MessageHeaderItem;
+import com.google.common.base.Objects;
+
+import java.util.Locale;
+
+/**
+ * Remembers the heights that message header and footer overlays were measured at, so that
+ * rendering a conversation doesn't have to bind and measure a view for every message again.
+ * The heights are shared by all conversation views in the process, so they are reused when a
+ * conversation is re-rendered, rotated back or opened again.
+ * <p>
+ * A {@link Key} covers what an overlay's height depends on: its message and the parts of it that
+ * are shown, whether it is expanded, the width it is laid out at, and the parts of the
+ * configuration that change how text is laid out: font scale, locale, density and UI mode. A
+ * height that is stale anyway is corrected when the overlay is measured again in the background
+ * after the conversation has been shown.
+ */
+final class OverlayHeightCache {
+    private static final int MAX_ENTRIES = 500;
+
+    private static final LruCache<Key, Integer> sHeights = new LruCache<Key, Integer>(MAX_ENTRIES);
+
+    private OverlayHeightCache() {}
+
+    /**
+     * @return the key of the given item's height, or null if heights of items of its type are
+     *     not cached
+     */
+    static Key getKey(ConversationOverlayItem item, int widthPx, Resources res) {
+        final int type = item.getType();
+        final ConversationMessage msg;
+        final int contentHash;
+        if (type == ConversationViewAdapter.VIEW_TYPE_MESSAGE_HEADER) {
+            final MessageHeaderItem header = (MessageHeaderItem) item;
+            msg = header.getMessage();
+            contentHash = Objects.hashCode(msg.getStateHashCode(), msg.getFrom(), msg.snippet,
+                    msg.read, msg.starred, msg.draftType, msg.sendingState, msg.spamWarningLevel,
+                    msg.spamWarningString, msg.viaDomain, header.getShowImages(),
+                    header.detailsExpanded);
+        } else if (type == ConversationViewAdapter.VIEW_TYPE_MESSAGE_FOOTER) {
+            msg = ((MessageFooterItem) item).getHeaderItem().getMessage();
+            contentHash = Objects.hashCode(msg.getStateHashCode(), msg.clipped, msg.permalink,
+                    msg.hasAttachments);
+        } else {
+            return null;
+        }
+        final Configuration config = res.getConfiguration();
+        return new Key(type, msg.id, contentHash, item.isExpanded(), widthPx, config.fontScale,
+                config.locale, res.getDisplayMetrics().densityDpi, config.uiMode);
+    }
+
+    /**
+     * @return the cached height in screen px, or -1 if there is none
+     */
+    static int get(Key key) {
+        final Integer heightPx = sHeights.get(key);
+        return heightPx != null ? heightPx : -1;
+    }
+
+    static void put(Key key, int heightPx) {
+        sHeights.put(key, heightPx);
+    }
+
+    static final class Key {
+        private final int mType;
+        private final long mMessageId;
+        private final int mContentHash;
+        private final boolean mExpanded;
+        private final int mWidthPx;
+        private final float mFontScale;
+        private final Locale mLocale;
+        private final int mDensityDpi;
+        private final int mUiMode;
+
+        Key(int type, long messageId, int contentHash, boolean expanded, int widthPx,
+                float fontScale, Locale locale, int densityDpi, int uiMode) {
+            mType = type;
+            mMessageId = messageId;
+            mContentHash = contentHash;
+            mExpanded = expanded;
+            mWidthPx = widthPx;
+            mFontScale = fontScale;
+            mLocale = locale;
+            mDensityDpi = densityDpi;
+            mUiMode = uiMode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mType == other.mType && mMessageId == other.mMessageId
+                    && mContentHash == other.mContentHash && mExpanded == other.mExpanded
+                    && mWidthPx == other.mWidthPx && mFontScale == other.mFontScale
+                    && Objects.equal(mLocale, other.mLocale) && mDensityDpi == other.mDensityDpi
+                    && mUiMode == other.mUiMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(mType, mMessageId, mContentHash, mExpanded, mWidthPx,
+                    mFontScale, mLocale, mDensityDpi, mUiMode);
+        }
+
+        @Override
+        public String toString() {
+            return "[OverlayHeightCache.Key type=" + mType + " id=" + mMessageId
+                    + " expanded=" + mExpanded + " width=" + mWidthPx + " locale=" + mLocale
+                    + "]";
+        }
+    }
+}
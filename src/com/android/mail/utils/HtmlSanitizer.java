@@ -18,6 +18,7 @@ package com.android.mail.utils;
 import android.os.Looper;
 import android.util.Log;
 
+import com.android.mail.perf.ConversationRenderTrace;
 import com.android.mail.perf.Timer;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -399,9 +400,12 @@ public final class HtmlSanitizer {
 
         // run the html through the sanitizer
         Timer.startTiming("sanitizingHTMLEmail");
+        final int span = ConversationRenderTrace.begin(ConversationRenderTrace.SANITIZE,
+                ConversationRenderTrace.getBodyBucket(rawHtml.length()));
         try {
             org.owasp.html.HtmlSanitizer.sanitize(rawHtml, policy);
         } finally {
+            ConversationRenderTrace.end(span);
             Timer.stopTiming("sanitizingHTMLEmail");
         }
 
@@ -18,6 +18,7 @@ package com.android.mail.utils;
 
 import android.graphics.Color;
 import android.graphics.Typeface;
+import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.style.AbsoluteSizeSpan;
@@ -37,22 +38,85 @@ import com.google.android.mail.common.html.parser.HtmlTree;
 import com.google.common.collect.Lists;
 
 import java.util.LinkedList;
+import java.util.List;
 
 public class HtmlUtils {
 
     static final String LOG_TAG = LogTag.getLogTag();
 
+    /**
+     * Receives the progress of an incremental
+     * {@link #htmlToSpan(String, HtmlTree.ConverterFactory, int, SpanConversionCallback)}.
+     * Both methods are called on the converting thread.
+     */
+    public interface SpanConversionCallback {
+        /**
+         * @return true if the conversion should stop. Checked at every block boundary.
+         */
+        boolean isCancelled();
+
+        /**
+         * Called at most once, at the first block boundary after the requested amount of text
+         * has been converted.
+         * @param partial a copy of the text converted so far. The text of the final result
+         *     always starts with the text of this.
+         */
+        void onFirstChunkConverted(Spanned partial);
+    }
+
     /**
      * Use our custom SpannedConverter to process the HtmlNode results from HtmlTree.
      * @param html
      * @return processed HTML as a Spanned
      */
     public static Spanned htmlToSpan(String html, HtmlTree.ConverterFactory factory) {
+        return htmlToSpan(html, factory, 0, null);
+    }
+
+    /**
+     * Same as {@link #htmlToSpan(String, HtmlTree.ConverterFactory)}, but lets the caller show
+     * the beginning of the text before the rest is converted, and stop the conversion early.
+     * Like {@link HtmlTree#getHtmlChunks(int, int, int)}, chunks only end on nodes that break
+     * the flow, so a chunk never ends in the middle of a line of text.
+     *
+     * @param firstChunkLength the length of text to convert before
+     *     {@link SpanConversionCallback#onFirstChunkConverted(Spanned)} is called. It is not
+     *     called if the whole html is no longer than this.
+     * @param callback the callback to report progress to, or null
+     * @return processed HTML as a Spanned, or null if the conversion was cancelled
+     */
+    public static Spanned htmlToSpan(String html, HtmlTree.ConverterFactory factory,
+            int firstChunkLength, SpanConversionCallback callback) {
         AnalyticsTimer.getInstance().trackStart(AnalyticsTimer.COMPOSE_HTML_TO_SPAN);
         // Get the html "tree"
         final HtmlTree htmlTree = com.android.mail.utils.Utils.getHtmlTree(html);
-        htmlTree.setConverterFactory(factory);
-        final Spanned spanned = htmlTree.getSpanned();
+        final HtmlTree.Converter<Spanned> converter =
+                (HtmlTree.Converter<Spanned>) factory.createInstance();
+
+        final List<HtmlDocument.Node> nodes = htmlTree.getNodesList();
+        final int numNodes = nodes.size();
+        // The text of the html is about as long as the html at most, so if all of the html fits
+        // in the first chunk it is converted in one go rather than shown twice
+        boolean firstChunkConverted = callback == null || html.length() <= firstChunkLength;
+        for (int i = 0; i < numNodes; i++) {
+            final HtmlDocument.Node node = nodes.get(i);
+            if (callback != null && breaksFlow(node)) {
+                if (callback.isCancelled()) {
+                    AnalyticsTimer.getInstance().stopTracking(
+                            AnalyticsTimer.COMPOSE_HTML_TO_SPAN);
+                    LogUtils.i(LOG_TAG, "htmlToSpan cancelled, input: %d, converted: %d",
+                            html.length(), converter.getPlainTextLength());
+                    return null;
+                }
+                if (!firstChunkConverted && converter.getPlainTextLength() >= firstChunkLength) {
+                    callback.onFirstChunkConverted(new SpannableString(converter.getObject()));
+                    firstChunkConverted = true;
+                }
+            }
+            converter.addNode(node, i, htmlTree.findEndTag(i));
+        }
+
+        final Spanned spanned = converter.getObject();
         AnalyticsTimer.getInstance().logDuration(AnalyticsTimer.COMPOSE_HTML_TO_SPAN, true,
                 "compose", "html_to_span", null);
         LogUtils.i(LOG_TAG, "htmlToSpan completed, input: %d, result: %d", html.length(),
@@ -60,6 +124,15 @@ public class HtmlUtils {
         return spanned;
     }
 
+    private static boolean breaksFlow(HtmlDocument.Node node) {
+        if (node instanceof HtmlDocument.Tag) {
+            return ((HtmlDocument.Tag) node).getElement().breaksFlow();
+        } else if (node instanceof HtmlDocument.EndTag) {
+            return ((HtmlDocument.EndTag) node).getElement().breaksFlow();
+        }
+        return false;
+    }
+
     /**
      * Class that handles converting the html into a Spanned.
      * This class will only handle a subset of the html tags. Below is the full list:
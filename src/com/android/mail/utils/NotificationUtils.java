@@ -66,6 +66,7 @@ import com.android.mail.utils.NotificationActionUtils.NotificationAction;
 import com.google.android.mail.common.html.parser.HTML;
 import com.google.android.mail.common.html.parser.HTML4;
 import com.google.android.mail.common.html.parser.HtmlDocument;
+import com.google.android.mail.common.html.parser.HtmlParser;
 import com.google.android.mail.common.html.parser.HtmlTree;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
@@ -110,6 +111,18 @@ public class NotificationUtils {
                 }
             };
 
+    /**
+     * The most body text a single message notification shows. Extracting more than this from the
+     * message's HTML is wasted work.
+     */
+    private static final int MAX_NOTIFICATION_BODY_LENGTH = 1024;
+
+    /**
+     * How many characters of HTML are parsed, per character of body text still needed, before
+     * checking whether enough text has been extracted.
+     */
+    private static final int HTML_CHARS_PER_TEXT_CHAR = 8;
+
     private static BidiFormatter sBidiFormatter = BidiFormatter.getInstance();
 
     // Maps summary notification to conversation notification ids.
@@ -1817,7 +1830,49 @@ public class NotificationUtils {
     }
 
     private static String getMessageBodyWithoutElidedText(final Message message) {
-        return getMessageBodyWithoutElidedText(message.getBodyAsHtml());
+        return getMessageBodyWithoutElidedText(message.getBodyAsHtml(),
+                MAX_NOTIFICATION_BODY_LENGTH);
+    }
+
+    /**
+     * Returns the start of the plain text of the given html, with elided text removed, like
+     * {@link #getMessageBodyWithoutElidedText(String)}. Rather than building a tree for the whole
+     * document, this parses only a prefix of the html and streams its nodes through the
+     * converter, stopping once {@code maxLength} characters of text have been produced. The
+     * prefix is grown only if it didn't yield enough text.
+     *
+     * @param html the message body
+     * @param maxLength the maximum number of characters of plain text to return
+     */
+    public static String getMessageBodyWithoutElidedText(String html, int maxLength) {
+        if (TextUtils.isEmpty(html)) {
+            return "";
+        }
+        int clipLength = maxLength * HTML_CHARS_PER_TEXT_CHAR;
+        while (true) {
+            final HtmlParser parser = new HtmlParser();
+            if (clipLength < html.length()) {
+                parser.setClipLength(clipLength);
+            }
+            final HtmlDocument document = parser.parse(html);
+
+            final StreamingMailMessagePlainTextConverter converter =
+                    new StreamingMailMessagePlainTextConverter();
+            for (HtmlDocument.Node node : document.getNodes()) {
+                converter.addNode(node);
+                if (converter.getPlainTextLength() >= maxLength) {
+                    break;
+                }
+            }
+
+            final String text = converter.getObject();
+            if (text.length() >= maxLength) {
+                return text.substring(0, maxLength);
+            } else if (!parser.isClipped()) {
+                return text;
+            }
+            clipLength *= HTML_CHARS_PER_TEXT_CHAR;
+        }
     }
 
     public static String getMessageBodyWithoutElidedText(String html) {
@@ -1973,31 +2028,76 @@ public class NotificationUtils {
             }
 
             // If this tag starts another elided text block, we want to remember the end
-            if (n instanceof HtmlDocument.Tag) {
-                boolean foundElidedTextTag = false;
-                final HtmlDocument.Tag htmlTag = (HtmlDocument.Tag)n;
-                final HTML.Element htmlElement = htmlTag.getElement();
-                if (ELIDED_TEXT_ELEMENT_NAME.equals(htmlElement.getName())) {
-                    // Make sure that the class is what is expected
-                    final List<HtmlDocument.TagAttribute> attributes =
-                            htmlTag.getAttributes(ELIDED_TEXT_ATTRIBUTE);
-                    for (HtmlDocument.TagAttribute attribute : attributes) {
-                        if (ELIDED_TEXT_ELEMENT_ATTRIBUTE_CLASS_VALUE.equals(
-                                attribute.getValue())) {
-                            // Found an "elided-text" div.  Remember information about this tag
-                            mEndNodeElidedTextBlock = endNum;
-                            foundElidedTextTag = true;
-                            break;
-                        }
+            if (n instanceof HtmlDocument.Tag && isElidedTextTag((HtmlDocument.Tag) n)) {
+                mEndNodeElidedTextBlock = endNum;
+                return;
+            }
+
+            super.addNode(n, nodeNum, endNum);
+        }
+
+        /**
+         * Returns true if the tag starts an "elided-text" div.
+         */
+        private static boolean isElidedTextTag(HtmlDocument.Tag htmlTag) {
+            final HTML.Element htmlElement = htmlTag.getElement();
+            if (ELIDED_TEXT_ELEMENT_NAME.equals(htmlElement.getName())) {
+                // Make sure that the class is what is expected
+                final List<HtmlDocument.TagAttribute> attributes =
+                        htmlTag.getAttributes(ELIDED_TEXT_ATTRIBUTE);
+                for (HtmlDocument.TagAttribute attribute : attributes) {
+                    if (ELIDED_TEXT_ELEMENT_ATTRIBUTE_CLASS_VALUE.equals(attribute.getValue())) {
+                        return true;
                     }
                 }
+            }
+            return false;
+        }
+    }
 
-                if (foundElidedTextTag) {
+    /**
+     * Like {@link MailMessagePlainTextConverter}, but consumes the nodes of an
+     * {@link HtmlDocument} in document order, without an {@link HtmlTree}. Since there is no tree
+     * to find the end of an elided text block, the block is tracked by counting nested divs.
+     */
+    private static class StreamingMailMessagePlainTextConverter
+            extends HtmlTree.DefaultPlainTextConverter {
+        /** The number of divs open inside the current elided text block, or 0 if not in one. */
+        private int mElidedTextDivDepth = 0;
+
+        public void addNode(HtmlDocument.Node n) {
+            if (mElidedTextDivDepth > 0) {
+                if (n instanceof HtmlDocument.Tag) {
+                    final HtmlDocument.Tag tag = (HtmlDocument.Tag) n;
+                    if (!tag.isSelfTerminating() && isDiv(tag.getElement())) {
+                        mElidedTextDivDepth++;
+                    }
+                } else if (n instanceof HtmlDocument.EndTag
+                        && isDiv(((HtmlDocument.EndTag) n).getElement())) {
+                    mElidedTextDivDepth--;
+                    if (mElidedTextDivDepth == 0) {
+                        super.addNode(MailMessagePlainTextConverter.ELIDED_TEXT_REPLACEMENT_NODE,
+                                -1, -1);
+                    }
+                }
+                return;
+            }
+
+            if (n instanceof HtmlDocument.Tag) {
+                final HtmlDocument.Tag tag = (HtmlDocument.Tag) n;
+                if (MailMessagePlainTextConverter.isElidedTextTag(tag)) {
+                    if (!tag.isSelfTerminating()) {
+                        mElidedTextDivDepth = 1;
+                    }
                     return;
                 }
             }
 
-            super.addNode(n, nodeNum, endNum);
+            super.addNode(n, -1, -1);
+        }
+
+        private static boolean isDiv(HTML.Element element) {
+            return MailMessagePlainTextConverter.ELIDED_TEXT_ELEMENT_NAME.equals(element.getName());
         }
     }
 
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.utils;
+
+/**
+ * Converts plain text to HTML in a single pass, linking web URLs, email addresses and phone
+ * numbers on the way. It does the job of {@link android.text.util.Linkify#addLinks} followed by
+ * {@link android.text.Html#toHtml}, with the same paragraphs, line breaks and runs of spaces, but
+ * without building any spans.
+ * <p>
+ * The matching is simpler than Linkify's: a web URL has to start with "http://", "https://",
+ * "rtsp://" or "www.", an email address has to have a domain with an alphabetic top-level domain,
+ * and a phone number is a run of 7 to 15 digits with the usual separators between them.
+ */
+public final class PlainTextLinkifier {
+    private static final String PARAGRAPH_START = "<p dir=\"auto\">";
+    private static final String PARAGRAPH_END = "</p>\n";
+
+    private static final String[] URL_SCHEMES = { "http://", "https://", "rtsp://" };
+    private static final String WWW_PREFIX = "www.";
+    private static final String URL_TRAILING_PUNCTUATION = ".,;:!?'*";
+    private static final String EMAIL_LOCAL_PUNCTUATION = "._%+-";
+
+    private static final int MIN_PHONE_DIGITS = 7;
+    private static final int MAX_PHONE_DIGITS = 15;
+
+    private PlainTextLinkifier() {}
+
+    /**
+     * @return the text as HTML paragraphs, with links
+     */
+    public static String toHtml(String text) {
+        final int length = text.length();
+        final StringBuilder out = new StringBuilder(length + length / 8 + 32);
+        out.append(PARAGRAPH_START);
+        int i = 0;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                i = appendNewlines(out, text, i);
+                continue;
+            }
+            if (c == ' ') {
+                i = appendSpaces(out, text, i);
+                continue;
+            }
+            if (i == 0 || !isWordChar(text.charAt(i - 1))) {
+                int end = matchUrl(text, i);
+                if (end > 0) {
+                    final boolean www = text.regionMatches(true, i, WWW_PREFIX, 0,
+                            WWW_PREFIX.length());
+                    final String href = www ? "http://" + text.substring(i, end)
+                            : lowerCaseScheme(text.substring(i, end));
+                    appendLink(out, href, text, i, end);
+                    i = end;
+                    continue;
+                }
+                end = matchEmail(text, i);
+                if (end > 0) {
+                    appendLink(out, "mailto:" + text.substring(i, end), text, i, end);
+                    i = end;
+                    continue;
+                }
+                end = matchPhone(text, i);
+                if (end > 0) {
+                    appendLink(out, "tel:" + digitsAndPlusOnly(text, i, end), text, i, end);
+                    i = end;
+                    continue;
+                }
+            }
+            appendEscaped(out, c);
+            i++;
+        }
+        out.append(PARAGRAPH_END);
+        return out.toString();
+    }
+
+    /**
+     * Appends the line breaks for the run of newlines at the given position, like
+     * {@link android.text.Html#toHtml}: one newline breaks the line, and two or more start a new
+     * paragraph, with a line break for each newline after the second.
+     *
+     * @return the position after the newlines
+     */
+    private static int appendNewlines(StringBuilder out, String text, int start) {
+        final int length = text.length();
+        int newlines = 0;
+        int i = start;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (c == '\r') {
+                // "\r\n" is a single newline
+                i++;
+                if (i < length && text.charAt(i) == '\n') {
+                    i++;
+                }
+            } else if (c == '\n') {
+                i++;
+            } else {
+                break;
+            }
+            newlines++;
+        }
+        if (newlines == 1) {
+            out.append("<br>\n");
+        } else {
+            for (int n = 2; n < newlines; n++) {
+                out.append("<br>");
+            }
+            if (i < length) {
+                out.append(PARAGRAPH_END).append(PARAGRAPH_START);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Appends the run of spaces at the given position so that HTML doesn't collapse it.
+     *
+     * @return the position after the spaces
+     */
+    private static int appendSpaces(StringBuilder out, String text, int start) {
+        final int length = text.length();
+        int i = start;
+        while (i + 1 < length && text.charAt(i + 1) == ' ') {
+            out.append("&nbsp;");
+            i++;
+        }
+        out.append(' ');
+        return i + 1;
+    }
+
+    private static void appendLink(StringBuilder out, String href, String text, int start,
+            int end) {
+        out.append("<a href=\"");
+        appendEscaped(out, href, 0, href.length());
+        out.append("\">");
+        appendEscaped(out, text, start, end);
+        out.append("</a>");
+    }
+
+    private static void appendEscaped(StringBuilder out, String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            appendEscaped(out, text.charAt(i));
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, char c) {
+        switch (c) {
+            case '<':
+                out.append("&lt;");
+                break;
+            case '>':
+                out.append("&gt;");
+                break;
+            case '&':
+                out.append("&amp;");
+                break;
+            case '"':
+                out.append("&quot;");
+                break;
+            default:
+                out.append(c);
+                break;
+        }
+    }
+
+    /**
+     * @return the end of the web URL at the given position, or -1 if there is none
+     */
+    private static int matchUrl(String text, int start) {
+        final char first = Character.toLowerCase(text.charAt(start));
+        if (first != 'h' && first != 'r' && first != 'w') {
+            return -1;
+        }
+        int hostStart = -1;
+        for (String scheme : URL_SCHEMES) {
+            if (text.regionMatches(true, start, scheme, 0, scheme.length())) {
+                hostStart = start + scheme.length();
+                break;
+            }
+        }
+        final boolean www = hostStart < 0;
+        if (www) {
+            if (!text.regionMatches(true, start, WWW_PREFIX, 0, WWW_PREFIX.length())) {
+                return -1;
+            }
+            hostStart = start + WWW_PREFIX.length();
+        }
+
+        final int length = text.length();
+        if (hostStart >= length || !Character.isLetterOrDigit(text.charAt(hostStart))) {
+            return -1;
+        }
+        int end = hostStart;
+        boolean dottedHost = false;
+        boolean inHost = true;
+        // Parentheses opened and not yet closed within the URL so far
+        int openParens = 0;
+        while (end < length) {
+            final char c = text.charAt(end);
+            if (c <= ' ' || c == '<' || c == '>' || c == '"' || Character.isWhitespace(c)) {
+                break;
+            }
+            if (c == '(') {
+                openParens++;
+            } else if (c == ')') {
+                openParens--;
+            }
+            if (inHost) {
+                if (c == '/' || c == ':' || c == '?' || c == '#') {
+                    inHost = false;
+                } else if (c == '.' && end + 1 < length
+                        && Character.isLetterOrDigit(text.charAt(end + 1))) {
+                    dottedHost = true;
+                }
+            }
+            end++;
+        }
+        if (www && !dottedHost) {
+            return -1;
+        }
+
+        // Leave out punctuation that ends the sentence, and a closing parenthesis that doesn't
+        // belong to the URL
+        while (end > hostStart) {
+            final char c = text.charAt(end - 1);
+            if (c == ')') {
+                // Keep it if it closes a parenthesis opened inside the URL
+                if (openParens >= 0) {
+                    break;
+                }
+                openParens++;
+            } else if (URL_TRAILING_PUNCTUATION.indexOf(c) < 0) {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    private static String lowerCaseScheme(String url) {
+        final int schemeEnd = url.indexOf(':');
+        return url.substring(0, schemeEnd).toLowerCase() + url.substring(schemeEnd);
+    }
+
+    /**
+     * @return the end of the email address at the given position, or -1 if there is none
+     */
+    private static int matchEmail(String text, int start) {
+        final int length = text.length();
+        int i = start;
+        while (i < length && isEmailLocalChar(text.charAt(i))) {
+            i++;
+        }
+        if (i == start || i >= length || text.charAt(i) != '@') {
+            return -1;
+        }
+        final int domainStart = ++i;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (!isAsciiLetterOrDigit(c) && c != '-' && c != '.') {
+                break;
+            }
+            i++;
+        }
+        while (i > domainStart && (text.charAt(i - 1) == '.' || text.charAt(i - 1) == '-')) {
+            i--;
+        }
+
+        // The domain needs a top-level domain of at least two letters
+        final int lastDot = text.lastIndexOf('.', i - 1);
+        if (lastDot <= domainStart || i - lastDot - 1 < 2) {
+            return -1;
+        }
+        for (int j = lastDot + 1; j < i; j++) {
+            if (!isAsciiLetter(text.charAt(j))) {
+                return -1;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return the end of the phone number at the given position, or -1 if there is none
+     */
+    private static int matchPhone(String text, int start) {
+        final char first = text.charAt(start);
+        if (first != '+' && first != '(' && !isAsciiDigit(first)) {
+            return -1;
+        }
+        final int length = text.length();
+        int digits = 0;
+        int end = -1;
+        int separators = 0;
+        // An opening parenthesis needs to be closed before the last digit
+        boolean closed = first != '(';
+        boolean sawClose = false;
+        for (int i = first == '+' ? start + 1 : start; i < length; i++) {
+            final char c = text.charAt(i);
+            if (isAsciiDigit(c)) {
+                if (++digits > MAX_PHONE_DIGITS) {
+                    return -1;
+                }
+                end = i + 1;
+                separators = 0;
+                closed |= sawClose;
+            } else if (c == ' ' || c == '-' || c == '.' || c == '(' || c == ')') {
+                // Allow ") " and " (", but not a run of separators
+                if (++separators > 2) {
+                    break;
+                }
+                sawClose |= c == ')';
+            } else {
+                break;
+            }
+        }
+        if (digits < MIN_PHONE_DIGITS || !closed
+                || (end < length && Character.isLetterOrDigit(text.charAt(end)))) {
+            return -1;
+        }
+        return end;
+    }
+
+    private static String digitsAndPlusOnly(String text, int start, int end) {
+        final StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c == '+' || isAsciiDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return whether a link can't start right after the given char
+     */
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || EMAIL_LOCAL_PUNCTUATION.indexOf(c) >= 0
+                || c == '@';
+    }
+
+    private static boolean isEmailLocalChar(char c) {
+        return isAsciiLetterOrDigit(c) || EMAIL_LOCAL_PUNCTUATION.indexOf(c) >= 0;
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiLetter(c) || isAsciiDigit(c);
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -345,7 +345,7 @@ public class Utils {
         if (TextUtils.isEmpty(htmlText)) {
             return "";
         }
-        return getHtmlTree(htmlText, new HtmlParser(), new HtmlTreeBuilder()).getPlainText();
+        return getHtmlTree(htmlText, HTML_PARSER.get(), new HtmlTreeBuilder()).getPlainText();
     }
 
     public static String convertHtmlToPlainText(String htmlText, HtmlParser parser,
@@ -360,9 +360,22 @@ public class Utils {
      * Returns a {@link HtmlTree} representation of the specified HTML string.
      */
     public static HtmlTree getHtmlTree(String htmlText) {
-        return getHtmlTree(htmlText, new HtmlParser(), new HtmlTreeBuilder());
+        return getHtmlTree(htmlText, HTML_PARSER.get(), new HtmlTreeBuilder());
     }
 
+    /**
+     * One {@link HtmlParser} per thread, so that its node buffer and its caches of unknown
+     * elements and attributes are reused from one message to the next. A parser is not
+     * reentrant, and the trees it produces don't reference it, so confining each instance to a
+     * thread is all the sharing it needs.
+     */
+    private static final ThreadLocal<HtmlParser> HTML_PARSER = new ThreadLocal<HtmlParser>() {
+        @Override
+        protected HtmlParser initialValue() {
+            return new HtmlParser();
+        }
+    };
+
     /**
      * Returns a {@link HtmlTree} representation of the specified HTML string.
      */
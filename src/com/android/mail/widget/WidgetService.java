@@ -52,9 +52,12 @@ import com.android.mail.utils.DelayedTaskHandler;
 import com.android.mail.utils.FolderUri;
 import com.android.mail.utils.LogTag;
 import com.android.mail.utils.LogUtils;
+import com.android.mail.utils.LruCache;
 import com.android.mail.utils.Utils;
+import com.google.common.base.Objects;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class WidgetService extends RemoteViewsService {
@@ -201,6 +204,8 @@ public class WidgetService extends RemoteViewsService {
             implements RemoteViewsService.RemoteViewsFactory, OnLoadCompleteListener<Cursor> {
         private static final int MAX_CONVERSATIONS_COUNT = 25;
         private static final int MAX_SENDERS_LENGTH = 25;
+        // Leave room for rows that scroll out of the list and back in between refreshes
+        private static final int MAX_CACHED_ROWS = MAX_CONVERSATIONS_COUNT * 2;
 
         private static final int FOLDER_LOADER_ID = 0;
         private static final int CONVERSATION_CURSOR_LOADER_ID = 1;
@@ -226,6 +231,93 @@ public class WidgetService extends RemoteViewsService {
         private final WidgetService mService;
         private String mSendersSplitToken;
         private String mElidedPaddingToken;
+        private boolean mDisplayFolderColors;
+        /**
+         * Rows built for recent cursors, keyed by conversation id. Guarded by
+         * {@link #sWidgetLock}.
+         */
+        private final LruCache<Long, WidgetRow> mRowCache =
+                new LruCache<Long, WidgetRow>(MAX_CACHED_ROWS);
+        /**
+         * A hash of the folder's capabilities and type when the rows in {@link #mRowCache} were
+         * built, or null before the folder is loaded. Guarded by {@link #sWidgetLock}.
+         */
+        private Integer mFolderStateHash;
+
+        /**
+         * A {@link RemoteViews} built for one conversation row, along with the narrow set of
+         * columns it was built from. When the same row shows up in a later cursor with the same
+         * values, the views can be handed back to the host without parsing a full
+         * {@link Conversation} again.
+         */
+        private static final class WidgetRow {
+            final long orderKey;
+            final long dateMs;
+            final int read;
+            final int starred;
+            final int hasAttachments;
+            final int sendingState;
+            final int numMessages;
+            final int numDrafts;
+            final int flags;
+            final int rawFoldersHash;
+            final int contentHash;
+            final CharSequence date;
+            final RemoteViews views;
+
+            WidgetRow(Cursor cursor, int rawFoldersHash, int contentHash, CharSequence date,
+                    RemoteViews views) {
+                orderKey = cursor.getLong(UIProvider.CONVERSATION_ORDER_KEY_COLUMN);
+                dateMs = cursor.getLong(UIProvider.CONVERSATION_DATE_RECEIVED_MS_COLUMN);
+                read = cursor.getInt(UIProvider.CONVERSATION_READ_COLUMN);
+                starred = cursor.getInt(UIProvider.CONVERSATION_STARRED_COLUMN);
+                hasAttachments = cursor.getInt(UIProvider.CONVERSATION_HAS_ATTACHMENTS_COLUMN);
+                sendingState = cursor.getInt(UIProvider.CONVERSATION_SENDING_STATE_COLUMN);
+                numMessages = cursor.getInt(UIProvider.CONVERSATION_NUM_MESSAGES_COLUMN);
+                numDrafts = cursor.getInt(UIProvider.CONVERSATION_NUM_DRAFTS_COLUMN);
+                flags = cursor.getInt(UIProvider.CONVERSATION_FLAGS_COLUMN);
+                this.rawFoldersHash = rawFoldersHash;
+                this.contentHash = contentHash;
+                this.date = date;
+                this.views = views;
+            }
+
+            /**
+             * Returns true if the row at the cursor's current position would render identically
+             * to this one.
+             */
+            boolean matches(Cursor cursor, int rawFoldersHash, int contentHash,
+                    CharSequence date) {
+                return orderKey == cursor.getLong(UIProvider.CONVERSATION_ORDER_KEY_COLUMN)
+                        && dateMs ==
+                                cursor.getLong(UIProvider.CONVERSATION_DATE_RECEIVED_MS_COLUMN)
+                        && read == cursor.getInt(UIProvider.CONVERSATION_READ_COLUMN)
+                        && starred == cursor.getInt(UIProvider.CONVERSATION_STARRED_COLUMN)
+                        && hasAttachments ==
+                                cursor.getInt(UIProvider.CONVERSATION_HAS_ATTACHMENTS_COLUMN)
+                        && sendingState ==
+                                cursor.getInt(UIProvider.CONVERSATION_SENDING_STATE_COLUMN)
+                        && numMessages == cursor.getInt(UIProvider.CONVERSATION_NUM_MESSAGES_COLUMN)
+                        && numDrafts == cursor.getInt(UIProvider.CONVERSATION_NUM_DRAFTS_COLUMN)
+                        && flags == cursor.getInt(UIProvider.CONVERSATION_FLAGS_COLUMN)
+                        && this.rawFoldersHash == rawFoldersHash
+                        && this.contentHash == contentHash
+                        && TextUtils.equals(this.date, date);
+            }
+
+            /**
+             * Returns a hash of the text shown in the row at the cursor's current position: its
+             * subject, snippet and senders.
+             */
+            static int getContentHash(Cursor cursor) {
+                final byte[] infoBlob = cursor.getBlob(UIProvider.CONVERSATION_INFO_COLUMN);
+                final int infoHash = infoBlob != null && infoBlob.length > 0
+                        ? Arrays.hashCode(infoBlob)
+                        : Objects.hashCode(Conversation.readConversationInfo(cursor));
+                return Objects.hashCode(cursor.getString(UIProvider.CONVERSATION_SUBJECT_COLUMN),
+                        cursor.getString(UIProvider.CONVERSATION_SNIPPET_COLUMN), infoHash);
+            }
+        }
 
         public MailFactory(Context context, Intent intent, WidgetService service) {
             mContext = context;
@@ -304,6 +396,7 @@ public class WidgetService extends RemoteViewsService {
             mConversationCursorLoader.startLoading();
             mSendersSplitToken = res.getString(R.string.senders_split_token);
             mElidedPaddingToken = res.getString(R.string.elided_padding_token);
+            mDisplayFolderColors = res.getBoolean(R.bool.display_folder_colors_in_widget);
             mFolderLoader = new CursorLoader(mContext, mFolderUri, UIProvider.FOLDERS_PROJECTION,
                     null, null, null);
             mFolderLoader.registerListener(FOLDER_LOADER_ID, this);
@@ -329,6 +422,7 @@ public class WidgetService extends RemoteViewsService {
                 // The Loader should close the cursor, so just unset the reference
                 // to it here.
                 mConversationCursor = null;
+                mRowCache.clear();
             }
 
             if (mFolderLoader != null) {
@@ -407,6 +501,25 @@ public class WidgetService extends RemoteViewsService {
                     return getViewMoreConversationsView();
                 }
 
+                // Get styled date.
+                final CharSequence date = DateUtils.getRelativeTimeSpanString(mContext,
+                        mConversationCursor.getLong(
+                                UIProvider.CONVERSATION_DATE_RECEIVED_MS_COLUMN));
+
+                // Reuse the views built for this row by an earlier cursor if nothing the widget
+                // displays has changed since.
+                final long conversationId =
+                        mConversationCursor.getLong(UIProvider.CONVERSATION_ID_COLUMN);
+                final int rawFoldersHash = mDisplayFolderColors ? Arrays.hashCode(
+                        mConversationCursor.getBlob(UIProvider.CONVERSATION_RAW_FOLDERS_COLUMN))
+                        : 0;
+                final int contentHash = WidgetRow.getContentHash(mConversationCursor);
+                final WidgetRow cachedRow = mRowCache.get(conversationId);
+                if (cachedRow != null && cachedRow.matches(mConversationCursor, rawFoldersHash,
+                        contentHash, date)) {
+                    return cachedRow.views;
+                }
+
                 Conversation conversation = new Conversation(mConversationCursor);
                 // Split the senders and status from the instructions.
 
@@ -416,10 +529,6 @@ public class WidgetService extends RemoteViewsService {
                         Folder.shouldShowRecipients(mFolderCapabilities), true);
                 final SpannableStringBuilder senderBuilder = elideParticipants(senders);
 
-                // Get styled date.
-                CharSequence date = DateUtils.getRelativeTimeSpanString(mContext,
-                        conversation.dateMs);
-
                 final int ignoreFolderType;
                 if ((mFolderType & FolderType.INBOX) != 0) {
                     ignoreFolderType = FolderType.INBOX;
@@ -438,6 +547,8 @@ public class WidgetService extends RemoteViewsService {
                         Utils.createViewConversationIntent(mContext, conversation, mFolderUri,
                                 mAccount));
 
+                mRowCache.put(conversationId, new WidgetRow(mConversationCursor, rawFoldersHash,
+                        contentHash, date, remoteViews));
                 return remoteViews;
             }
         }
@@ -542,6 +653,17 @@ public class WidgetService extends RemoteViewsService {
                     return;
                 }
 
+                // Rows show the folder's type and capabilities, so rebuild them if those change
+                final int folderStateHash = Objects.hashCode(
+                        data.getInt(UIProvider.FOLDER_CAPABILITIES_COLUMN),
+                        data.getInt(UIProvider.FOLDER_TYPE_COLUMN));
+                synchronized (sWidgetLock) {
+                    if (mFolderStateHash != null && mFolderStateHash != folderStateHash) {
+                        mRowCache.clear();
+                    }
+                    mFolderStateHash = folderStateHash;
+                }
+
                 final int unreadCount = data.getInt(UIProvider.FOLDER_UNREAD_COUNT_COLUMN);
                 final String folderName = data.getString(UIProvider.FOLDER_NAME_COLUMN);
                 mFolderCount = data.getInt(UIProvider.FOLDER_TOTAL_COUNT_COLUMN);
@@ -588,6 +710,10 @@ public class WidgetService extends RemoteViewsService {
                     appWidgetManager.partiallyUpdateAppWidget(mAppWidgetId, remoteViews);
                 }
             } else if (loader == mAccountLoader) {
+                // The account changed, and senders are styled according to it
+                synchronized (sWidgetLock) {
+                    mRowCache.clear();
+                }
                 BaseWidgetProvider.updateWidget(mContext, mAppWidgetId, mAccount, mFolderType,
                         mFolderCapabilities, mFolderUri, mFolderConversationListUri,
                         mFolderDisplayName);
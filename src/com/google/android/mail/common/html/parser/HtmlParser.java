@@ -27,7 +27,6 @@ import com.google.common.io.ByteStreams;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.regex.Matcher;
@@ -60,6 +59,14 @@ public class HtmlParser {
   // The entire array of nodes
   private List<HtmlDocument.Node> nodes;
 
+  // Node buffer reused across calls to parse(). Nodes are accumulated here and
+  // then copied, coalesced, into the document's own list.
+  private ArrayList<HtmlDocument.Node> nodeBuffer;
+
+  // Buffers that grew beyond this many nodes are dropped after parsing rather
+  // than retained, so that one huge message doesn't pin a huge array.
+  private static final int MAX_RETAINED_NODE_BUFFER_SIZE = 4096;
+
   // Turn on for debug information.
   private static boolean DEBUG = false;
 
@@ -186,9 +193,15 @@ public class HtmlParser {
    */
   public HtmlDocument parse(String html) {
     this.html = html;
-    // Use a LinkedList because we don't know the number of nodes ahead of
-    // time. This will be compacted into an ArrayList in coalesceTextNodes().
-    nodes = Lists.newLinkedList();
+    // Reuse the node buffer from the previous parse, if any. It is compacted
+    // into the document's own ArrayList in coalesceTextNodes().
+    if (nodeBuffer == null) {
+      nodeBuffer = new ArrayList<HtmlDocument.Node>();
+    } else {
+      // A previous parse may have thrown before clearing the buffer
+      nodeBuffer.clear();
+    }
+    nodes = nodeBuffer;
     state = State.IN_TEXT;
 
     clipped = false;
@@ -232,9 +245,12 @@ public class HtmlParser {
       clipped = pos >= clipLength;
     }
 
-    nodes = coalesceTextNodes(nodes);
-
-    HtmlDocument doc = new HtmlDocument(nodes);
+    HtmlDocument doc = new HtmlDocument(coalesceTextNodes(nodes));
+    if (nodeBuffer.size() > MAX_RETAINED_NODE_BUFFER_SIZE) {
+      nodeBuffer = null;
+    } else {
+      nodeBuffer.clear();
+    }
     nodes = null;
     html = null;
     return doc;
@@ -250,55 +266,65 @@ public class HtmlParser {
    */
   static List<HtmlDocument.Node> coalesceTextNodes(
       List<HtmlDocument.Node> nodes) {
-    List<HtmlDocument.Node> out =
-        new ArrayList<HtmlDocument.Node>(nodes.size());
-    LinkedList<HtmlDocument.Text> textNodes = Lists.newLinkedList();
+    final int size = nodes.size();
+    List<HtmlDocument.Node> out = new ArrayList<HtmlDocument.Node>(size);
+    int textStart = -1;
 
-    for (HtmlDocument.Node node : nodes) {
+    for (int i = 0; i < size; i++) {
+      HtmlDocument.Node node = nodes.get(i);
       if (node instanceof HtmlDocument.Text) {
-        textNodes.add((HtmlDocument.Text) node);
+        if (textStart < 0) {
+          textStart = i;
+        }
       } else {
-        mergeTextNodes(textNodes, out);
+        if (textStart >= 0) {
+          mergeTextNodes(nodes, textStart, i, out);
+          textStart = -1;
+        }
         out.add(node);
       }
     }
-    mergeTextNodes(textNodes, out);
+    if (textStart >= 0) {
+      mergeTextNodes(nodes, textStart, size, out);
+    }
     return out;
   }
 
   /**
-   * Flushes any Text nodes in {@code textNodes} into a single Text node
-   * in {@code output}. {@code textNodes} is guaranteed to be empty when
-   * the function returns.
-   * @param textNodes Text nodes.
+   * Flushes the run of Text nodes in {@code nodes} between {@code start}
+   * (inclusive) and {@code end} (exclusive) into a single Text node in
+   * {@code output}.
+   * @param nodes Nodes, which must support fast random access.
+   * @param start Index of the first Text node of the run.
+   * @param end Index just past the last Text node of the run.
    * @param output Destination to which results are added.
    */
-  private static void mergeTextNodes(LinkedList<HtmlDocument.Text> textNodes,
+  private static void mergeTextNodes(List<HtmlDocument.Node> nodes,
+                                     int start, int end,
                                      List<HtmlDocument.Node> output) {
-    if (!textNodes.isEmpty()) {
-      if (textNodes.size() == 1) {
-        output.add(textNodes.removeFirst());
-      } else {
-        int combinedTextLen = 0;
-        int combinedInputLen = 0;
-        for (HtmlDocument.Text text : textNodes) {
-          combinedTextLen += text.getText().length();
-          if (text.getOriginalHTML() != null) {
-            combinedInputLen += text.getOriginalHTML().length();
-          }
+    if (end - start == 1) {
+      output.add(nodes.get(start));
+    } else {
+      int combinedTextLen = 0;
+      int combinedInputLen = 0;
+      for (int i = start; i < end; i++) {
+        HtmlDocument.Text text = (HtmlDocument.Text) nodes.get(i);
+        combinedTextLen += text.getText().length();
+        if (text.getOriginalHTML() != null) {
+          combinedInputLen += text.getOriginalHTML().length();
         }
-        StringBuilder combinedText = new StringBuilder(combinedTextLen);
-        StringBuilder combinedInput = new StringBuilder(combinedInputLen);
-        while (!textNodes.isEmpty()) {
-          HtmlDocument.Text text = textNodes.removeFirst();
-          combinedText.append(text.getText());
-          if (text.getOriginalHTML() != null) {
-            combinedInput.append(text.getOriginalHTML());
-          }
+      }
+      StringBuilder combinedText = new StringBuilder(combinedTextLen);
+      StringBuilder combinedInput = new StringBuilder(combinedInputLen);
+      for (int i = start; i < end; i++) {
+        HtmlDocument.Text text = (HtmlDocument.Text) nodes.get(i);
+        combinedText.append(text.getText());
+        if (text.getOriginalHTML() != null) {
+          combinedInput.append(text.getOriginalHTML());
         }
-        String originalInput = combinedInputLen > 0 ? combinedInput.toString() : null;
-        output.add(HtmlDocument.createText(combinedText.toString(), originalInput));
       }
+      String originalInput = combinedInputLen > 0 ? combinedInput.toString() : null;
+      output.add(HtmlDocument.createText(combinedText.toString(), originalInput));
     }
   }
 
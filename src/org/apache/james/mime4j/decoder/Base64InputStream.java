@@ -128,7 +128,8 @@ public class Base64InputStream extends InputStream {
         }
     }
 
-    private static byte[] TRANSLATION = {
+    // ANDROID:  Shared with EncodedWordDecoder
+    static final byte[] TRANSLATION = {
         -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, /* 0x00 */
         -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, /* 0x10 */
         -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 62, -1, -1, -1, 63, /* 0x20 */
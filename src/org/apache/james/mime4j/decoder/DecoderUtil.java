@@ -25,9 +25,6 @@ import org.apache.james.mime4j.LogFactory;
 //END android-changed
 import org.apache.james.mime4j.util.CharsetUtil;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 /**
@@ -39,6 +36,18 @@ import java.io.UnsupportedEncodingException;
 public class DecoderUtil {
     private static Log log = LogFactory.getLog(DecoderUtil.class);
     
+    /**
+     * ANDROID:  Each thread decodes encoded words with its own decoder, so that its buffers and
+     * CharsetDecoders can be reused from one word to the next.
+     */
+    private static final ThreadLocal<EncodedWordDecoder> WORD_DECODER =
+            new ThreadLocal<EncodedWordDecoder>() {
+                @Override
+                protected EncodedWordDecoder initialValue() {
+                    return new EncodedWordDecoder();
+                }
+            };
+
     /**
      * Decodes a string containing quoted-printable encoded data. 
      * 
@@ -46,26 +55,9 @@ public class DecoderUtil {
      * @return the decoded bytes.
      */
     public static byte[] decodeBaseQuotedPrintable(String s) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        
-        try {
-            byte[] bytes = s.getBytes("US-ASCII");
-            
-            QuotedPrintableInputStream is = new QuotedPrintableInputStream(
-                                               new ByteArrayInputStream(bytes));
-            
-            int b = 0;
-            while ((b = is.read()) != -1) {
-                baos.write(b);
-            }
-        } catch (IOException e) {
-            /*
-             * This should never happen!
-             */
-            log.error(e);
-        }
-        
-        return baos.toByteArray();
+        final EncodedWordDecoder decoder = WORD_DECODER.get();
+        decoder.decodeQuotedPrintable(s, 0, s.length(), false);
+        return decoder.getBytes();
     }
     
     /**
@@ -75,26 +67,9 @@ public class DecoderUtil {
      * @return the decoded bytes.
      */
     public static byte[] decodeBase64(String s) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        
-        try {
-            byte[] bytes = s.getBytes("US-ASCII");
-            
-            Base64InputStream is = new Base64InputStream(
-                                        new ByteArrayInputStream(bytes));
-            
-            int b = 0;
-            while ((b = is.read()) != -1) {
-                baos.write(b);
-            }
-        } catch (IOException e) {
-            /*
-             * This should never happen!
-             */
-            log.error(e);
-        }
-        
-        return baos.toByteArray();
+        final EncodedWordDecoder decoder = WORD_DECODER.get();
+        decoder.decodeBase64(s, 0, s.length());
+        return decoder.getBytes();
     }
     
     /**
@@ -125,21 +100,9 @@ public class DecoderUtil {
      */
     public static String decodeQ(String encodedWord, String charset)
             throws UnsupportedEncodingException {
-           
-        /*
-         * Replace _ with =20
-         */
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < encodedWord.length(); i++) {
-            char c = encodedWord.charAt(i);
-            if (c == '_') {
-                sb.append("=20");
-            } else {
-                sb.append(c);
-            }
-        }
-        
-        return new String(decodeBaseQuotedPrintable(sb.toString()), charset);
+        final EncodedWordDecoder decoder = WORD_DECODER.get();
+        decoder.decodeQuotedPrintable(encodedWord, 0, encodedWord.length(), true);
+        return new String(decoder.getBytes(), charset);
     }
     
     /**
@@ -164,7 +127,7 @@ public class DecoderUtil {
         int previousEnd = 0;
         boolean previousWasEncoded = false;
 
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(body.length());
 
         while (true) {
             int begin = body.indexOf("=?", previousEnd);
@@ -189,32 +152,58 @@ public class DecoderUtil {
             }
             end += 2;
 
-            String sep = body.substring(previousEnd, begin);
-
-            String decoded = decodeEncodedWord(body, begin, end);
-            if (decoded == null) {
-                sb.append(sep);
-                sb.append(body.substring(begin, end));
+            // ANDROID:  The word is decoded into the decoder's buffers, and only copied once,
+            // straight into the result.
+            final EncodedWordDecoder decoder = WORD_DECODER.get();
+            final String charset = decodeEncodedWord(decoder, body, begin, end);
+            if (charset == null) {
+                sb.append(body, previousEnd, end);
             } else {
-                if (!previousWasEncoded || !CharsetUtil.isWhitespace(sep)) {
-                    sb.append(sep);
+                if (!previousWasEncoded || !isWhitespace(body, previousEnd, begin)) {
+                    sb.append(body, previousEnd, begin);
                 }
-                sb.append(decoded);
+                decoder.appendChars(charset, sb);
             }
 
             previousEnd = end;
-            previousWasEncoded = decoded != null;
+            previousWasEncoded = charset != null;
         }
 
         if (previousEnd == 0)
             return body;
 
-        sb.append(body.substring(previousEnd));
+        sb.append(body, previousEnd, body.length());
         return sb.toString();
     }
 
+    private static boolean isWhitespace(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!CharsetUtil.isWhitespace(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // return null on error. Begin is index of '=?' in body.
     public static String decodeEncodedWord(String body, int begin, int end) {
+        final EncodedWordDecoder decoder = WORD_DECODER.get();
+        final String charset = decodeEncodedWord(decoder, body, begin, end);
+        if (charset == null) {
+            return null;
+        }
+        final StringBuilder sb = new StringBuilder();
+        decoder.appendChars(charset, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Decodes the bytes of an encoded word into the decoder.
+     *
+     * @return the Java charset to decode the bytes with, or null on error
+     */
+    private static String decodeEncodedWord(EncodedWordDecoder decoder, String body, int begin,
+            int end) {
         // Skip the '?=' chars in body and scan forward from there for next '?'
         int qm1 = body.indexOf('?', begin + 2);
         if (qm1 == -1 || qm1 == end - 2)
@@ -225,8 +214,8 @@ public class DecoderUtil {
             return null;
 
         String mimeCharset = body.substring(begin + 2, qm1);
-        String encoding = body.substring(qm1 + 1, qm2);
-        String encodedText = body.substring(qm2 + 1, end - 2);
+        int encodedTextStart = qm2 + 1;
+        int encodedTextEnd = end - 2;
 
         String charset = CharsetUtil.toJavaCharset(mimeCharset);
         if (charset == null) {
@@ -246,7 +235,7 @@ public class DecoderUtil {
             return null;
         }
 
-        if (encodedText.length() == 0) {
+        if (encodedTextStart >= encodedTextEnd) {
             if (log.isWarnEnabled()) {
                 log.warn("Missing encoded text in encoded word: '"
                         + body.substring(begin, end) + "'");
@@ -255,10 +244,13 @@ public class DecoderUtil {
         }
 
         try {
-            if (encoding.equalsIgnoreCase("Q")) {
-                return DecoderUtil.decodeQ(encodedText, charset);
-            } else if (encoding.equalsIgnoreCase("B")) {
-                return DecoderUtil.decodeB(encodedText, charset);
+            final char encoding = qm2 == qm1 + 2 ? body.charAt(qm1 + 1) : 0;
+            if (encoding == 'Q' || encoding == 'q') {
+                decoder.decodeQuotedPrintable(body, encodedTextStart, encodedTextEnd, true);
+                return charset;
+            } else if (encoding == 'B' || encoding == 'b') {
+                decoder.decodeBase64(body, encodedTextStart, encodedTextEnd);
+                return charset;
             } else {
                 if (log.isWarnEnabled()) {
                     log.warn("Warning: Unknown encoding in encoded word '"
@@ -266,13 +258,6 @@ public class DecoderUtil {
                 }
                 return null;
             }
-        } catch (UnsupportedEncodingException e) {
-            // should not happen because of isDecodingSupported check above
-            if (log.isWarnEnabled()) {
-                log.warn("Unsupported encoding in encoded word '"
-                        + body.substring(begin, end) + "'", e);
-            }
-            return null;
         } catch (RuntimeException e) {
             if (log.isWarnEnabled()) {
                 log.warn("Could not decode encoded word '"
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.james.mime4j.decoder;
+
+import org.apache.james.mime4j.util.CharsetUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * ANDROID:  Decodes the text of encoded words without stream wrappers. The Base64 and
+ * quoted-printable decoding gives the same bytes as {@link Base64InputStream} and
+ * {@link QuotedPrintableInputStream} over the US-ASCII bytes of the text. The bytes and chars
+ * are kept in buffers that are reused from one word to the next, and a CharsetDecoder is
+ * created only once per charset, so an instance must only be used by one thread at a time.
+ */
+final class EncodedWordDecoder {
+    // Buffers that grew bigger than this for an unusually long word are not kept
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4096;
+    private static final int INITIAL_BUFFER_SIZE = 128;
+
+    private byte[] mBytes = new byte[INITIAL_BUFFER_SIZE];
+    private int mByteCount;
+    private ByteBuffer mByteBuffer = ByteBuffer.wrap(mBytes);
+    private CharBuffer mChars = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    /** Decoders by Java charset name. */
+    private final HashMap<String, CharsetDecoder> mDecoders =
+            new HashMap<String, CharsetDecoder>();
+
+    /** Whitespace seen by the quoted-printable decoder, but not decoded yet. */
+    private int mPendingWhitespaceStart;
+    private int mQuotedPrintableState;
+    private int mQuotedPrintableFirstDigit;
+
+    /**
+     * Base64 decodes the given range of the string into the byte buffer, replacing its content.
+     */
+    void decodeBase64(String s, int start, int end) {
+        resetBytes();
+        int accum = 0;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            if (c == '=') {
+                // Padding: decode the partial group, and ignore the rest
+                if (count == 3) {
+                    writeByte(accum >> 10);
+                    writeByte(accum >> 2);
+                } else if (count == 2) {
+                    writeByte(accum >> 4);
+                }
+                return;
+            }
+            final int value = c < 0x80 ? Base64InputStream.TRANSLATION[c] : -1;
+            if (value < 0) {
+                continue;
+            }
+            accum = (accum << 6) | value;
+            if (++count == 4) {
+                writeByte(accum >> 16);
+                writeByte(accum >> 8);
+                writeByte(accum);
+                accum = 0;
+                count = 0;
+            }
+        }
+        // Like Base64InputStream, drop a partial group that isn't padded
+    }
+
+    /**
+     * Quoted-printable decodes the given range of the string into the byte buffer, replacing
+     * its content.
+     *
+     * @param underscoreIsSpace true for the 'Q' encoding of encoded words, where '_' stands for
+     *     "=20"
+     */
+    void decodeQuotedPrintable(String s, int start, int end, boolean underscoreIsSpace) {
+        resetBytes();
+        mQuotedPrintableState = 0;
+        mPendingWhitespaceStart = -1;
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            if (c == ' ' || c == '\t') {
+                if (mPendingWhitespaceStart < 0) {
+                    mPendingWhitespaceStart = i;
+                }
+                continue;
+            }
+            if (c == '\r' || c == '\n') {
+                // Transport padding before a line break is dropped
+                mPendingWhitespaceStart = -1;
+            } else if (mPendingWhitespaceStart >= 0) {
+                for (int j = mPendingWhitespaceStart; j < i; j++) {
+                    decodeQuotedPrintableByte(s.charAt(j));
+                }
+                mPendingWhitespaceStart = -1;
+            }
+
+            if (c == '_' && underscoreIsSpace) {
+                decodeQuotedPrintableByte('=');
+                decodeQuotedPrintableByte('2');
+                decodeQuotedPrintableByte('0');
+            } else {
+                // Non US-ASCII chars are what String.getBytes("US-ASCII") makes of them
+                decodeQuotedPrintableByte(c < 0x80 ? c : '?');
+            }
+        }
+        // Whitespace and an incomplete escape at the end are dropped
+    }
+
+    /**
+     * Runs one byte through the state machine of {@link QuotedPrintableInputStream}.
+     */
+    private void decodeQuotedPrintableByte(int b) {
+        switch (mQuotedPrintableState) {
+            case 0:  // start state, no bytes pending
+                if (b != '=') {
+                    writeByte(b);
+                } else {
+                    mQuotedPrintableState = 1;
+                }
+                break;
+            case 1:  // encountered "=" so far
+                if (b == '\r') {
+                    mQuotedPrintableState = 2;
+                } else if (hexValue(b) >= 0) {
+                    mQuotedPrintableState = 3;
+                    mQuotedPrintableFirstDigit = b;
+                } else if (b == '=') {
+                    // Malformed "==": emit one '=' and stay in this state
+                    writeByte('=');
+                } else {
+                    mQuotedPrintableState = 0;
+                    writeByte('=');
+                    writeByte(b);
+                }
+                break;
+            case 2:  // encountered "=\r" so far
+                mQuotedPrintableState = 0;
+                if (b != '\n') {
+                    writeByte('=');
+                    writeByte('\r');
+                    writeByte(b);
+                }
+                break;
+            default:  // encountered "=<digit>" so far
+                mQuotedPrintableState = 0;
+                final int low = hexValue(b);
+                if (low >= 0) {
+                    writeByte((hexValue(mQuotedPrintableFirstDigit) << 4) | low);
+                } else {
+                    writeByte('=');
+                    writeByte(mQuotedPrintableFirstDigit);
+                    writeByte(b);
+                }
+                break;
+        }
+    }
+
+    private static int hexValue(int b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 0xA;
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 0xA;
+        }
+        return -1;
+    }
+
+    /**
+     * @return a copy of the decoded bytes
+     */
+    byte[] getBytes() {
+        return Arrays.copyOf(mBytes, mByteCount);
+    }
+
+    /**
+     * Decodes the bytes with the given charset, and appends the chars to the StringBuilder.
+     * Malformed and unmappable input is replaced, as {@link String#String(byte[], String)}
+     * does.
+     *
+     * @param javaCharset a Java charset name that {@link CharsetUtil} supports decoding of
+     */
+    void appendChars(String javaCharset, StringBuilder sb) {
+        CharsetDecoder decoder = mDecoders.get(javaCharset);
+        if (decoder == null) {
+            decoder = CharsetUtil.getCharset(javaCharset).newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            mDecoders.put(javaCharset, decoder);
+        }
+
+        final int maxChars = (int) Math.ceil(mByteCount * (double) decoder.maxCharsPerByte());
+        if (mChars.capacity() < maxChars) {
+            mChars = CharBuffer.allocate(maxChars);
+        }
+        mByteBuffer.limit(mByteCount);
+        mByteBuffer.position(0);
+        mChars.clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(mByteBuffer, mChars, true);
+        if (!result.isOverflow()) {
+            result = decoder.flush(mChars);
+        }
+        if (result.isOverflow()) {
+            // Can't happen with room for maxCharsPerByte chars per byte, but be safe
+            mByteBuffer.position(0);
+            sb.append(decoder.charset().decode(mByteBuffer));
+        } else {
+            mChars.flip();
+            sb.append(mChars);
+        }
+
+        if (mChars.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            mChars = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    }
+
+    private void resetBytes() {
+        mByteCount = 0;
+        if (mBytes.length > MAX_RETAINED_BUFFER_SIZE) {
+            mBytes = new byte[INITIAL_BUFFER_SIZE];
+            mByteBuffer = ByteBuffer.wrap(mBytes);
+        }
+    }
+
+    private void writeByte(int b) {
+        if (mByteCount == mBytes.length) {
+            mBytes = Arrays.copyOf(mBytes, mBytes.length * 2);
+            mByteBuffer = ByteBuffer.wrap(mBytes);
+        }
+        mBytes[mByteCount++] = (byte) b;
+    }
+}
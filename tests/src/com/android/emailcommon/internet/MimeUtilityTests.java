@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.emailcommon.internet;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.emailcommon.mail.Body;
+import com.android.emailcommon.mail.Part;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Tests of {@link MimeUtility#getTextFromPart}.
+ */
+@SmallTest
+public class MimeUtilityTests extends AndroidTestCase {
+
+    private static Part createTextPart(String text, String contentType) throws Exception {
+        // TextBody streams the text as UTF-8
+        return new MimeBodyPart(new TextBody(text), contentType);
+    }
+
+    public void testGetTextFromPart() throws Exception {
+        final String text = "caf\u00e9 \u65e5\u672c";
+        assertEquals(text, MimeUtility.getTextFromPart(
+                createTextPart(text, "text/plain; charset=utf-8"), null));
+        // The charset is mapped to its Java name
+        assertEquals("caf\u00c3\u00a9", MimeUtility.getTextFromPart(
+                createTextPart("caf\u00e9", "text/html; charset=\"latin1\""), null));
+
+        assertNull(MimeUtility.getTextFromPart(
+                createTextPart(text, "image/png"), null));
+        assertNull(MimeUtility.getTextFromPart(null, null));
+    }
+
+    public void testGetTextFromPartMaxLength() throws Exception {
+        final Part part = createTextPart("abc\u00e9def", "text/plain; charset=UTF-8");
+        assertEquals("abc\u00e9", MimeUtility.getTextFromPart(part, null, 4));
+        assertEquals("", MimeUtility.getTextFromPart(part, null, 0));
+        assertEquals("abc\u00e9def", MimeUtility.getTextFromPart(part, null, 100));
+    }
+
+    public void testGetTextFromLargePart() throws Exception {
+        final GeneratedBody body = new GeneratedBody(1024 * 1024);
+        final String text = MimeUtility.getTextFromPart(
+                new MimeBodyPart(body, "text/plain; charset=us-ascii"), null);
+        assertEquals(body.mSize, text.length());
+        assertEquals('x', text.charAt(0));
+        assertEquals('y', text.charAt(text.length() - 1));
+    }
+
+    public void testGetTextFromLargePartPreview() throws Exception {
+        // A preview of a 10 MB part only reads and holds its start
+        final GeneratedBody body = new GeneratedBody(10 * 1024 * 1024);
+        final String preview = MimeUtility.getTextFromPart(
+                new MimeBodyPart(body, "text/plain; charset=us-ascii"), null, 1000);
+        assertEquals(1000, preview.length());
+        assertEquals('x', preview.charAt(999));
+        assertTrue(body.mBytesRead < 64 * 1024);
+    }
+
+    /**
+     * A body of "xxx...y" that is generated as it is read, and counts the bytes read.
+     */
+    private static class GeneratedBody implements Body {
+        final int mSize;
+        int mBytesRead;
+
+        GeneratedBody(int size) {
+            mSize = size;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                @Override
+                public int read() {
+                    if (mBytesRead == mSize) {
+                        return -1;
+                    }
+                    return ++mBytesRead == mSize ? 'y' : 'x';
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.emailcommon.internet;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import org.apache.james.mime4j.field.datetime.DateTime;
+
+@SmallTest
+public class Rfc2822DateParserTests extends AndroidTestCase {
+
+    /**
+     * Verifies that the common forms are parsed to the same dates as mime4j parses them.
+     */
+    public void testMatchesMime4j() throws Exception {
+        final String dates[] = {
+                "Thu, 10 Dec 2009 15:08:08 -0700 (PDT)",
+                "Mon,1 Jan 2001 1:02 EST",
+                "1 Jan 99 23:59:60 +0000",
+                "Tue, 31 Feb 2012 00:00:00 +0530",
+                "Sat, 01 Mar 2014 12:00:00 GMT",
+                "Sun,  2 Nov 2014 08:09:10 -0800 (PST)",
+                "Fri, 17 Oct 2014 10:00:00 UT",
+                "5 Feb 49 01:02 PDT",
+                "5 Feb 50 01:02 MDT"};
+        for (String date : dates) {
+            assertEquals(date, DateTime.parse(date).getDate().getTime(),
+                    Rfc2822DateParser.parse(date));
+        }
+    }
+
+    /**
+     * Verifies that the date mime4j only accepts after LogUtils.cleanUpMimeDate() is parsed.
+     */
+    public void testGmtWithOffset() throws Exception {
+        assertEquals(DateTime.parse("Thu, 10 Dec 09 15:08:08 -0700").getDate().getTime(),
+                Rfc2822DateParser.parse("Thu, 10 Dec 09 15:08:08 GMT-0700"));
+    }
+
+    public void testUncommonFormsNotParsed() {
+        final String dates[] = {
+                "",
+                "Thursday, 10 Dec 2009 15:08:08 -0700",
+                "Thu, 10 December 2009 15:08:08 -0700",
+                "Thu, 10 Dec 2009 15:08:08",
+                "Thu, 10 Dec 2009 15:08:08 UTC",
+                "Thu, 10 Dec 2009 15:08:08 -0700 junk",
+                "Thu, 10 Dec 2009 15:08:08 GMT +0100",
+                "Thu, 10 Dec 109 15:08:08 -0700",
+                "Thu, 10 Dec 2009 24:08:08 -0700",
+                "Thu, 10 Dec 2009 15:08:08 Z"};
+        for (String date : dates) {
+            assertEquals(date, Rfc2822DateParser.NOT_PARSED, Rfc2822DateParser.parse(date));
+        }
+    }
+}
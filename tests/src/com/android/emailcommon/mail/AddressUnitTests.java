@@ -18,8 +18,14 @@ package com.android.emailcommon.mail;
 
 import android.test.AndroidTestCase;
 import android.test.suitebuilder.annotation.SmallTest;
+import android.text.TextUtils;
+import android.text.util.Rfc822Token;
+import android.text.util.Rfc822Tokenizer;
+
 import org.apache.james.mime4j.decoder.DecoderUtil;
 
+import java.util.ArrayList;
+
 /**
  * This is a series of unit tests for the Address class.  These tests must be locally
  * complete - no server(s) required.
@@ -698,4 +704,73 @@ public class AddressUnitTests extends AndroidTestCase {
         // isAllValid() must accept empty address list as valid
         assertTrue("Empty address list is valid", Address.isAllValid(""));
     }
+
+    public void testGetEmailAddressSimpleForms() {
+        final String simple[] = {"john@gmail.com", "John Smith <john@gmail.com>",
+                "<john@gmail.com>", "john@gmail.com <john@gmail.com>", " John <john@gmail.com>",
+                "=?UTF-8?B?5pel5pys6Kqe?= <john@gmail.com>", "\u65E5\u672C\u8A9E <a@co.jp>"};
+        for (String rawAddress : simple) {
+            final Address address = Address.parseSimpleEmailAddress(rawAddress);
+            assertNotNull(rawAddress, address);
+            assertTrue(rawAddress,
+                    addressEquals(Address.parseEmailAddress(rawAddress), address));
+        }
+
+        // Forms that the tokenizer or the html decoding would change are not simple
+        final String notSimple[] = {"\"Smith, John\" <john@gmail.com>", "John  Smith <j@x.com>",
+                "John (comment) <j@x.com>", "John &amp; Jane <j@x.com>", "a@b.com, c@d.com",
+                "John Smith", "John <j@x.com> trailing", "<>"};
+        for (String rawAddress : notSimple) {
+            assertNull(rawAddress, Address.parseSimpleEmailAddress(rawAddress));
+        }
+    }
+
+    public void testGetEmailAddressCached() {
+        final String rawAddress = "\"Smith, John\" <john@gmail.com>";
+        final Address address = Address.getEmailAddress(rawAddress);
+        assertEquals("john@gmail.com", address.getAddress());
+        assertEquals("Smith, John", address.getPersonal());
+        assertSame(address, Address.getEmailAddress(new String(rawAddress)));
+        assertNull(Address.getEmailAddress(""));
+    }
+
+    /**
+     * Verifies that parse() splits lists the same way Rfc822Tokenizer does.
+     */
+    public void testParseMatchesRfc822Tokenizer() {
+        final String lists[] = {MULTI_ADDRESSES_LIST,
+                "a@b.com;c@d.com ,, ;e@f.com",
+                "  first   last  <a@b.com> (comment, with (nested) comma), c@d.com",
+                "\"quoted \\\" name\"<a@b.com>", "\" spaced \"  name <a@b.com>",
+                "(comment only), a@b.com (trailing comment", "name <a@b.com", "\"a@b.com",
+                "a@b.com <c@d.com> <e@f.com>", "x@y.z\\", "a\tb <a@b.com>"};
+        for (String list : lists) {
+            final Rfc822Token[] tokens = Rfc822Tokenizer.tokenize(list);
+            final ArrayList<Address> expected = new ArrayList<Address>();
+            for (Rfc822Token token : tokens) {
+                final String address = token.getAddress();
+                if (!TextUtils.isEmpty(address) && Address.isValidAddress(address)) {
+                    final String name = token.getName();
+                    expected.add(new Address(address, TextUtils.isEmpty(name) ? null : name));
+                }
+            }
+            final Address[] actual = Address.parse(list);
+            assertEquals(list, expected.size(), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                assertTrue(list, addressEquals(expected.get(i), actual[i]));
+            }
+        }
+    }
+
+    public void testDecodeAddressPersonal() {
+        assertNull(Address.decodeAddressPersonal(null));
+        assertNull(Address.decodeAddressPersonal("\"\""));
+        assertNull(Address.decodeAddressPersonal("\""));
+        assertEquals("quoted", Address.decodeAddressPersonal("\"quoted\""));
+        assertEquals("half", Address.decodeAddressPersonal("\"half"));
+        assertEquals("in\"side", Address.decodeAddressPersonal("in\"side"));
+        assertEquals("big \"G\"", Address.decodeAddressPersonal("big \\\"G\\\""));
+        assertEquals("back\\slash", Address.decodeAddressPersonal("back\\\\slash"));
+        assertEquals("not\\escaped", Address.decodeAddressPersonal("not\\escaped"));
+    }
 }
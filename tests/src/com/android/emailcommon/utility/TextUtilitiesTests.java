@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.emailcommon.utility;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+
+/**
+ * Tests of the search term highlighting in {@link TextUtilities}.
+ */
+@SmallTest
+public class TextUtilitiesTests extends AndroidTestCase {
+
+    private static final String START = "<span style=\"background-color: "
+            + TextUtilities.HIGHLIGHT_COLOR_STRING + "\">";
+    private static final String END = "</span>";
+
+    public void testHighlightTermsInHtml() {
+        assertEquals("", TextUtilities.highlightTermsInHtml(null, "foo"));
+        assertEquals("no match", TextUtilities.highlightTermsInHtml("no match", "foo"));
+        assertEquals("no terms", TextUtilities.highlightTermsInHtml("no terms", "  "));
+
+        // Case is ignored, but preserved in the output
+        assertEquals("a " + START + "FoO" + END + " b " + START + "foo" + END,
+                TextUtilities.highlightTermsInHtml("a FoO b foo", "foo"));
+    }
+
+    public void testHighlightTermsInHtmlMultipleTerms() {
+        // Overlapping matches are merged into one highlight
+        assertEquals(START + "abcd" + END + " x",
+                TextUtilities.highlightTermsInHtml("abcd x", "abc bcd"));
+        // A term contained in another one
+        assertEquals("x" + START + "abc" + END,
+                TextUtilities.highlightTermsInHtml("xabc", "b abc"));
+        // A partial match of one term must not hide a match starting inside it
+        assertEquals("a" + START + "ab" + END,
+                TextUtilities.highlightTermsInHtml("aab", "ab"));
+    }
+
+    public void testHighlightTermsInHtmlSkipsTags() {
+        assertEquals("<b class=\"foo\">" + START + "foo" + END + "</b>",
+                TextUtilities.highlightTermsInHtml("<b class=\"foo\">foo</b>", "foo"));
+        assertEquals("<STYLE>foo{}</STYLE>" + START + "foo" + END,
+                TextUtilities.highlightTermsInHtml("<STYLE>foo{}</STYLE>foo", "foo"));
+        // A match does not span a tag
+        assertEquals("fo<b>o</b>",
+                TextUtilities.highlightTermsInHtml("fo<b>o</b>", "foo"));
+    }
+
+    public void testHighlightTermsInText() {
+        final CharSequence result = TextUtilities.highlightTermsInText("a <b>foo", "foo <b>");
+        assertEquals("a <b>foo", result.toString());
+
+        final Spanned spanned = (Spanned) result;
+        final BackgroundColorSpan[] spans =
+                spanned.getSpans(0, spanned.length(), BackgroundColorSpan.class);
+        assertEquals(2, spans.length);
+        assertEquals(2, spanned.getSpanStart(spans[0]));
+        assertEquals(5, spanned.getSpanEnd(spans[0]));
+        assertEquals(5, spanned.getSpanStart(spans[1]));
+        assertEquals(8, spanned.getSpanEnd(spans[1]));
+    }
+
+    public void testSearchTermMatcherIsCached() {
+        final TextUtilities.SearchTermMatcher matcher =
+                TextUtilities.getSearchTermMatcher("one two");
+        assertSame(matcher, TextUtilities.getSearchTermMatcher("one two"));
+        assertNotSame(matcher, TextUtilities.getSearchTermMatcher("one three"));
+    }
+}
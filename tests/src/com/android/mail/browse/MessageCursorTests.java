@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.browse;
+
+import android.database.MatrixCursor;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.mail.providers.UIProvider;
+import com.android.mail.providers.UIProvider.CursorExtraKeys;
+
+import java.util.List;
+
+@SmallTest
+public class MessageCursorTests extends AndroidTestCase {
+
+    /**
+     * Creates a cursor of messages with the given ids and html bodies.
+     */
+    private static MessageCursor createCursor(final boolean bodiesOmitted, long[] ids,
+            String[] bodies) {
+        final MatrixCursor inner = new MatrixCursor(UIProvider.MESSAGE_PROJECTION) {
+            @Override
+            public Bundle getExtras() {
+                final Bundle extras = new Bundle();
+                extras.putBoolean(CursorExtraKeys.EXTRA_BODIES_OMITTED, bodiesOmitted);
+                return extras;
+            }
+        };
+        for (int i = 0; i < ids.length; i++) {
+            final Object[] row = new Object[UIProvider.MESSAGE_PROJECTION.length];
+            row[UIProvider.MESSAGE_ID_COLUMN] = ids[i];
+            row[UIProvider.MESSAGE_BODY_HTML_COLUMN] = bodies[i];
+            inner.addRow(row);
+        }
+        return new MessageCursor(inner);
+    }
+
+    public void testPendingBodies() {
+        final MessageCursor cursor = createCursor(true, new long[] {1, 2, 3},
+                new String[] {"one", null, null});
+        final List<ConversationMessage> pending = cursor.getMessagesWithPendingBodies(0, 1);
+        assertEquals(1, pending.size());
+        assertEquals(2, pending.get(0).id);
+        assertEquals(2, cursor.getMessagesWithPendingBodies(0, 2).size());
+
+        // A body that is loaded as empty is not pending any more
+        cursor.setLoadedBodies(new long[] {2, 3}, new String[] {"two", null},
+                new String[] {null, null});
+        assertEquals(0, cursor.getMessagesWithPendingBodies(0, 2).size());
+        assertEquals("two", cursor.getMessageForId(2).bodyHtml);
+    }
+
+    public void testNoPendingBodiesUnlessOmitted() {
+        final MessageCursor cursor = createCursor(false, new long[] {1, 2},
+                new String[] {null, null});
+        assertEquals(0, cursor.getMessagesWithPendingBodies(0, 1).size());
+        assertFalse(cursor.getMessageForId(1).isBodyPending());
+    }
+
+    public void testCopyLoadedBodies() {
+        final MessageCursor oldCursor = createCursor(true, new long[] {1, 2, 3},
+                new String[] {"one", null, null});
+        oldCursor.setLoadedBodies(new long[] {2}, new String[] {"two"}, new String[] {null});
+
+        final MessageCursor newCursor = createCursor(true, new long[] {1, 2, 3, 4},
+                new String[] {null, null, null, "four"});
+        newCursor.copyLoadedBodies(oldCursor);
+        assertEquals("one", newCursor.getMessageForId(1).bodyHtml);
+        assertEquals("two", newCursor.getMessageForId(2).bodyHtml);
+        // Still pending in both cursors
+        assertTrue(newCursor.getMessageForId(3).isBodyPending());
+        assertEquals("four", newCursor.getMessageForId(4).bodyHtml);
+    }
+}
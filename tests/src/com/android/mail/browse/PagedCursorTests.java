@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.browse;
+
+import android.database.MatrixCursor;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.mail.providers.UIProvider;
+
+@SmallTest
+public class PagedCursorTests extends AndroidTestCase {
+
+    /**
+     * Creates a page of conversations with the given ids, ordered by descending order key.
+     */
+    private static MatrixCursor createPage(long... ids) {
+        return createPage(Bundle.EMPTY, ids);
+    }
+
+    /**
+     * Like {@link #createPage(long...)}, for a page with the given extras.
+     */
+    private static MatrixCursor createPage(final Bundle extras, long... ids) {
+        final MatrixCursor page = new MatrixCursor(UIProvider.CONVERSATION_PROJECTION) {
+            @Override
+            public Bundle getExtras() {
+                return extras;
+            }
+        };
+        for (long id : ids) {
+            final Object[] row = new Object[UIProvider.CONVERSATION_PROJECTION.length];
+            row[UIProvider.CONVERSATION_ID_COLUMN] = id;
+            row[UIProvider.CONVERSATION_ORDER_KEY_COLUMN] = 1000 - id;
+            page.addRow(row);
+        }
+        return page;
+    }
+
+    public void testAppend() {
+        final MatrixCursor first = createPage(1, 2, 3);
+        final PagedCursor cursor = new PagedCursor(first, 3);
+        assertEquals(3, cursor.getCount());
+        assertTrue(cursor.hasMorePages());
+        assertEquals(997, cursor.getLastOrderKey());
+
+        final MatrixCursor empty = createPage();
+        final MatrixCursor last = createPage(4, 5);
+        cursor.append(empty, 3);
+        cursor.append(last, 3);
+        assertEquals(5, cursor.getCount());
+        assertFalse(cursor.hasMorePages());
+        assertEquals(995, cursor.getLastOrderKey());
+
+        long id = 1;
+        for (boolean more = cursor.moveToFirst(); more; more = cursor.moveToNext()) {
+            assertEquals(id++, cursor.getLong(UIProvider.CONVERSATION_ID_COLUMN));
+        }
+        assertEquals(6, id);
+        assertTrue(cursor.moveToPosition(3));
+        assertEquals(4, cursor.getLong(UIProvider.CONVERSATION_ID_COLUMN));
+        assertTrue(cursor.moveToPosition(2));
+        assertEquals(3, cursor.getLong(UIProvider.CONVERSATION_ID_COLUMN));
+
+        cursor.close();
+        assertTrue(first.isClosed());
+        assertTrue(empty.isClosed());
+        assertTrue(last.isClosed());
+    }
+
+    public void testAppendKeepsPagesOpenAndPosition() {
+        final MatrixCursor first = createPage(1, 2, 3);
+        final PagedCursor cursor = new PagedCursor(first, 3);
+        assertTrue(cursor.moveToPosition(1));
+
+        final MatrixCursor second = createPage(4, 5, 6);
+        cursor.append(second, 3);
+        // Nothing but the cursor that owns the pages may close them, even when it is collected
+        System.gc();
+        System.runFinalization();
+        assertFalse(first.isClosed());
+        assertFalse(second.isClosed());
+
+        // The page under the current row wasn't moved by the append
+        assertEquals(1, cursor.getPosition());
+        assertEquals(2, cursor.getLong(UIProvider.CONVERSATION_ID_COLUMN));
+        assertTrue(cursor.moveToNext());
+        assertEquals(3, cursor.getLong(UIProvider.CONVERSATION_ID_COLUMN));
+        assertTrue(cursor.moveToNext());
+        assertEquals(4, cursor.getLong(UIProvider.CONVERSATION_ID_COLUMN));
+
+        cursor.close();
+        assertTrue(first.isClosed());
+        assertTrue(second.isClosed());
+    }
+
+    public void testFindPositionForOrderKey() {
+        final Bundle extras = new Bundle();
+        extras.putBoolean(UIProvider.CursorExtraKeys.EXTRA_ORDER_KEY_PAGING, true);
+        final PagedCursor cursor = new PagedCursor(createPage(extras, 1, 2, 3), 3);
+        cursor.append(createPage(5, 6), 3);
+        assertTrue(cursor.moveToPosition(1));
+
+        // Order keys are 999, 998, 997, 995 and 994
+        assertEquals(0, ConversationCursor.findPositionForOrderKey(cursor, 1000));
+        assertEquals(0, ConversationCursor.findPositionForOrderKey(cursor, 999));
+        assertEquals(2, ConversationCursor.findPositionForOrderKey(cursor, 997));
+        // Where the missing conversation 4 would be, which is now the next older one
+        assertEquals(3, ConversationCursor.findPositionForOrderKey(cursor, 996));
+        assertEquals(4, ConversationCursor.findPositionForOrderKey(cursor, 994));
+        assertEquals(5, ConversationCursor.findPositionForOrderKey(cursor, 0));
+        // The search leaves the position alone
+        assertEquals(1, cursor.getPosition());
+        assertEquals(2, cursor.getLong(UIProvider.CONVERSATION_ID_COLUMN));
+        cursor.close();
+
+        // Lists that aren't paged by order key may not be ordered by it
+        final PagedCursor unordered = new PagedCursor(createPage(1, 2, 3), 3);
+        assertEquals(-1, ConversationCursor.findPositionForOrderKey(unordered, 998));
+        unordered.close();
+    }
+
+    public void testEmptyPage() {
+        final PagedCursor cursor = new PagedCursor(createPage(), 3);
+        assertEquals(0, cursor.getCount());
+        assertFalse(cursor.hasMorePages());
+        assertFalse(cursor.moveToFirst());
+    }
+}
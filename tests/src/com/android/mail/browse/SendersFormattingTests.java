@@ -267,6 +267,42 @@ public class SendersFormattingTests extends AndroidTestCase {
         assertEquals("Andrew", displayableSenderNames.get(1));
     }
 
+    public void testStyledSendersReusedForUnchangedConversation() {
+        final ConversationInfo conv = createConversationInfo();
+        conv.addParticipant(new ParticipantInfo("a", "a@a.com", 0, true));
+        conv.addParticipant(new ParticipantInfo("b", "b@b.com", 1, false));
+
+        final Account account = createAccount();
+        final ArrayList<SpannableString> first = Lists.newArrayList();
+        SendersView.format(getContext(), conv, "", 100, first, null, null, account, false, true);
+        final ArrayList<SpannableString> second = Lists.newArrayList();
+        SendersView.format(getContext(), conv, "", 100, second, null, null, account, false, true);
+
+        assertEquals(2, second.size());
+        assertSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+
+        // Changing the read state restyles the sender instead of reusing the stale span
+        conv.markRead(true);
+        final ArrayList<SpannableString> third = Lists.newArrayList();
+        SendersView.format(getContext(), conv, "", 100, third, null, null, account, false, true);
+        assertEquals("b", third.get(1).toString());
+        assertNotSame(first.get(1), third.get(1));
+    }
+
+    public void testSparsePriorities() {
+        final ConversationInfo conv = createConversationInfo();
+        conv.addParticipant(new ParticipantInfo("a", "a@a.com", 0, false));
+        conv.addParticipant(new ParticipantInfo("b", "b@b.com", 40, false));
+
+        final ArrayList<SpannableString> strings = Lists.newArrayList();
+        final Account account = createAccount();
+        SendersView.format(getContext(), conv, "", 100, strings, null, null, account, false, false);
+        assertEquals(2, strings.size());
+        assertEquals("a", strings.get(0).toString());
+        assertEquals("b", strings.get(1).toString());
+    }
+
     private static Account createAccount() {
         try {
             final Map<String, Object> map = new HashMap<>(2);
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.perf;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+@SmallTest
+public class ConversationRenderTraceTests extends AndroidTestCase {
+
+    public void testHistogramPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMs(50));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(100);
+        }
+        histogram.record(20000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals((90 * 3 + 9 * 100 + 20000) / 100, histogram.getMeanMs());
+        assertEquals(20000, histogram.getMaxMs());
+        assertEquals(4, histogram.getPercentileMs(50));
+        assertEquals(4, histogram.getPercentileMs(90));
+        assertEquals(128, histogram.getPercentileMs(99));
+        assertEquals(20000, histogram.getPercentileMs(100));
+    }
+
+    public void testHistogramPercentileIsAtMostMax() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        assertEquals(5, histogram.getPercentileMs(50));
+    }
+
+    public void testSpans() {
+        final int span = ConversationRenderTrace.begin("test_stage", "test_bucket");
+        assertTrue(span != ConversationRenderTrace.NO_SPAN);
+        assertTrue(ConversationRenderTrace.end(span) >= 0);
+        // a span only ends once
+        assertEquals(-1, ConversationRenderTrace.end(span));
+
+        final int late = ConversationRenderTrace.begin("test_late_stage", null /* bucket */);
+        assertTrue(ConversationRenderTrace.end(late, "test_late_bucket") >= 0);
+
+        final int cancelled = ConversationRenderTrace.begin("test_cancelled_stage", "test_bucket");
+        ConversationRenderTrace.cancel(cancelled);
+        assertEquals(-1, ConversationRenderTrace.end(cancelled));
+        assertEquals(-1, ConversationRenderTrace.end(ConversationRenderTrace.NO_SPAN));
+
+        final StringWriter out = new StringWriter();
+        ConversationRenderTrace.dump("", new PrintWriter(out));
+        final String dump = out.toString();
+        assertTrue(dump, dump.contains("test_stage [test_bucket]"));
+        assertTrue(dump, dump.contains("test_late_stage [test_late_bucket]"));
+        assertFalse(dump, dump.contains("test_cancelled_stage"));
+    }
+
+    public void testOldestSpanIsDropped() {
+        final int oldest = ConversationRenderTrace.begin("test_oldest_stage", "test_bucket");
+        final int[] spans = new int[ConversationRenderTrace.MAX_OPEN_SPANS];
+        for (int i = 0; i < spans.length; i++) {
+            spans[i] = ConversationRenderTrace.begin("test_open_stage", "test_bucket");
+        }
+
+        assertEquals(-1, ConversationRenderTrace.end(oldest));
+        // only the oldest one was dropped to make room
+        assertTrue(ConversationRenderTrace.end(spans[spans.length - 1]) >= 0);
+        assertTrue(ConversationRenderTrace.end(spans[spans.length - 2]) >= 0);
+        for (int span : spans) {
+            ConversationRenderTrace.cancel(span);
+        }
+    }
+
+    public void testBuckets() {
+        assertEquals("1 msg, <=16K chars, html", ConversationRenderTrace.getBucket(1, 0, false));
+        assertEquals("2-4 msgs, <=16K chars, text",
+                ConversationRenderTrace.getBucket(3, 16 * 1024, true));
+        assertEquals("5-19 msgs, <=128K chars, html",
+                ConversationRenderTrace.getBucket(5, 16 * 1024 + 1, false));
+        assertEquals("20+ msgs, >128K chars, html",
+                ConversationRenderTrace.getBucket(20, 1024 * 1024, false));
+        assertEquals("body <=16K chars", ConversationRenderTrace.getBodyBucket(100));
+        assertEquals("body >128K chars", ConversationRenderTrace.getBodyBucket(1024 * 1024));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.ui;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.mail.providers.Conversation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+public class ConversationCheckedSetTests extends AndroidTestCase {
+
+    private static class CountingObserver implements ConversationSetObserver {
+        int mChanged;
+        int mPopulated;
+        int mEmpty;
+
+        @Override
+        public void onSetEmpty() {
+            mEmpty++;
+        }
+
+        @Override
+        public void onSetPopulated(ConversationCheckedSet set) {
+            mPopulated++;
+        }
+
+        @Override
+        public void onSetChanged(ConversationCheckedSet set) {
+            mChanged++;
+        }
+    }
+
+    private static List<Conversation> createConversations(int count) {
+        final List<Conversation> conversations = new ArrayList<Conversation>(count);
+        for (int i = 0; i < count; i++) {
+            conversations.add(new Conversation.Builder()
+                    .setId(i)
+                    .setUri(Uri.parse("content://test/conversation/" + i))
+                    .build());
+        }
+        return conversations;
+    }
+
+    public void testBulkChangesNotifyOnce() {
+        final ConversationCheckedSet set = new ConversationCheckedSet();
+        final CountingObserver observer = new CountingObserver();
+        set.addObserver(observer);
+
+        final List<Conversation> conversations = createConversations(5000);
+        set.putAll(conversations);
+        assertEquals(5000, set.size());
+        assertEquals(1, observer.mChanged);
+        assertEquals(1, observer.mPopulated);
+
+        set.removeAll(conversations.subList(0, 4000));
+        assertEquals(1000, set.size());
+        assertFalse(set.contains(conversations.get(0)));
+        assertTrue(set.contains(conversations.get(4000)));
+        assertEquals(2, observer.mChanged);
+
+        // Nothing is removed, so nothing is dispatched
+        set.removeAll(conversations.subList(0, 4000));
+        assertEquals(2, observer.mChanged);
+
+        set.removeAll(conversations);
+        assertTrue(set.isEmpty());
+        assertEquals(3, observer.mChanged);
+        assertEquals(1, observer.mEmpty);
+    }
+
+    public void testToggleAndValues() {
+        final ConversationCheckedSet set = new ConversationCheckedSet();
+        final CountingObserver observer = new CountingObserver();
+        set.addObserver(observer);
+        final List<Conversation> conversations = createConversations(3);
+
+        set.toggle(conversations.get(2));
+        set.toggle(conversations.get(0));
+        assertEquals(2, observer.mChanged);
+        assertEquals(1, observer.mPopulated);
+
+        final List<Conversation> values = new ArrayList<Conversation>(set.values());
+        assertEquals(2, values.size());
+        assertSame(conversations.get(0), values.get(0));
+        assertSame(conversations.get(2), values.get(1));
+        assertSame(set.values(), set.values());
+
+        set.toggle(conversations.get(0));
+        assertEquals(1, set.values().size());
+        assertEquals(2, values.size());
+    }
+}
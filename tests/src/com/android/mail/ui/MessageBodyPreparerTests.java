@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.ui;
+
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.android.mail.browse.ConversationMessage;
+import com.android.mail.browse.MessageCursor;
+import com.android.mail.providers.UIProvider;
+
+@SmallTest
+public class MessageBodyPreparerTests extends AndroidTestCase {
+
+    private static final String IMG_HTML = "<img src=\"http://google.com/favicon.ico\">";
+
+    private static MessageCursor createCursor(int count) {
+        final MatrixCursor inner = new MatrixCursor(UIProvider.MESSAGE_PROJECTION);
+        for (int i = 0; i < count; i++) {
+            final Object[] row = new Object[UIProvider.MESSAGE_PROJECTION.length];
+            row[UIProvider.MESSAGE_ID_COLUMN] = i;
+            row[UIProvider.MESSAGE_URI_COLUMN] = "content://test/message/" + i;
+            if (i % 2 == 0) {
+                row[UIProvider.MESSAGE_BODY_TEXT_COLUMN] = "see http://example.com/" + i;
+            } else {
+                row[UIProvider.MESSAGE_BODY_HTML_COLUMN] = IMG_HTML + i;
+                row[UIProvider.MESSAGE_EMBEDS_EXTERNAL_RESOURCES_COLUMN] = 1;
+            }
+            inner.addRow(row);
+        }
+        return new MessageCursor(inner);
+    }
+
+    public void testPreparedBodiesMatch() {
+        final MessageCursor cursor = createCursor(20);
+        MessageBodyPreparer.prepare(cursor);
+
+        int pos = -1;
+        while (cursor.moveToPosition(++pos)) {
+            final ConversationMessage msg = cursor.getMessage();
+            final String body = msg.getBodyAsHtml();
+            assertEquals(body, MessageBodyPreparer.getBody(msg, true /* safeForImages */));
+            final String expected = msg.embedsExternalResources()
+                    ? HtmlConversationTemplates.replaceAbsoluteImgUrls(body) : body;
+            assertEquals(expected, MessageBodyPreparer.getBody(msg, false /* safeForImages */));
+        }
+    }
+
+    public void testChangedBodyIsPreparedAgain() {
+        final MessageCursor first = createCursor(2);
+        MessageBodyPreparer.prepare(first);
+        assertTrue(first.moveToPosition(0));
+        final String before = MessageBodyPreparer.getBody(first.getMessage(), true);
+
+        final MatrixCursor inner = new MatrixCursor(UIProvider.MESSAGE_PROJECTION);
+        final Object[] row = new Object[UIProvider.MESSAGE_PROJECTION.length];
+        row[UIProvider.MESSAGE_ID_COLUMN] = 0;
+        row[UIProvider.MESSAGE_URI_COLUMN] = "content://test/message/0";
+        row[UIProvider.MESSAGE_BODY_TEXT_COLUMN] = "edited";
+        inner.addRow(row);
+        final MessageCursor second = new MessageCursor(inner);
+        assertTrue(second.moveToPosition(0));
+        final String after = MessageBodyPreparer.getBody(second.getMessage(), true);
+        assertFalse(before.equals(after));
+        assertEquals(second.getMessage().getBodyAsHtml(), after);
+    }
+}
@@ -76,4 +76,38 @@ public class NotificationUtilsTest extends AndroidTestCase {
 
         assertEquals(expectedText, resultText);
     }
+
+    /**
+     * Verifies that the length-limited extraction removes elided text, including nested divs,
+     * the same way the tree based extraction does.
+     */
+    public void testMessageBodyWithoutElidedTextMatchesTree() {
+        final String html = "<div>Reply text</div>"
+                + "<div class=\"elided-text\">On Monday someone wrote:"
+                + "<div>quoted <div>nested</div> text</div>more quoted</div>"
+                + "<p>Signature</p>";
+
+        final String expected = NotificationUtils.getMessageBodyWithoutElidedText(html);
+        assertFalse(expected.contains("quoted"));
+        assertEquals(expected, NotificationUtils.getMessageBodyWithoutElidedText(html, 1000));
+    }
+
+    /**
+     * Verifies that the length-limited extraction returns at most the requested number of
+     * characters, even when the text lies beyond the first chunk of html parsed.
+     */
+    public void testMessageBodyWithoutElidedTextMaxLength() {
+        final StringBuilder html = new StringBuilder("<style>");
+        for (int i = 0; i < 200; i++) {
+            html.append("p { margin: 0; } ");
+        }
+        html.append("</style>");
+        for (int i = 0; i < 100; i++) {
+            html.append("word ");
+        }
+
+        final String text = NotificationUtils.getMessageBodyWithoutElidedText(html.toString(), 20);
+        assertEquals(20, text.length());
+        assertTrue(text.startsWith("word word"));
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.mail.utils;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+@SmallTest
+public class PlainTextLinkifierTest extends AndroidTestCase {
+
+    private static void linkify(String text, String expectedParagraphs) {
+        assertEquals("<p dir=\"auto\">" + expectedParagraphs + "</p>\n",
+                PlainTextLinkifier.toHtml(text));
+    }
+
+    public void testEscaping() {
+        linkify("<b> & \"q\"", "&lt;b&gt; &amp; &quot;q&quot;");
+        linkify("a  b   c", "a&nbsp; b&nbsp;&nbsp; c");
+    }
+
+    public void testNewlines() {
+        linkify("one\ntwo", "one<br>\ntwo");
+        linkify("one\r\ntwo", "one<br>\ntwo");
+        linkify("one\n\ntwo", "one</p>\n<p dir=\"auto\">two");
+        linkify("one\n\n\ntwo", "one<br></p>\n<p dir=\"auto\">two");
+        linkify("one\n", "one<br>\n");
+    }
+
+    public void testUrls() {
+        linkify("see http://example.com/a?b=1&c=2.",
+                "see <a href=\"http://example.com/a?b=1&amp;c=2\">"
+                + "http://example.com/a?b=1&amp;c=2</a>.");
+        linkify("(www.example.com)",
+                "(<a href=\"http://www.example.com\">www.example.com</a>)");
+        linkify("HTTPS://example.com/wiki/Foo_(bar)",
+                "<a href=\"https://example.com/wiki/Foo_(bar)\">"
+                + "HTTPS://example.com/wiki/Foo_(bar)</a>");
+        linkify("www.example nowww.example.com", "www.example nowww.example.com");
+        linkify("(see http://example.com/Foo_(bar)).",
+                "(see <a href=\"http://example.com/Foo_(bar)\">"
+                + "http://example.com/Foo_(bar)</a>).");
+        linkify("http://example.com/a)))", "<a href=\"http://example.com/a\">"
+                + "http://example.com/a</a>)))");
+    }
+
+    public void testEmailAddresses() {
+        linkify("to john.doe+list@mail.example.org, thanks",
+                "to <a href=\"mailto:john.doe+list@mail.example.org\">"
+                + "john.doe+list@mail.example.org</a>, thanks");
+        linkify("me@localhost or me@example.c", "me@localhost or me@example.c");
+    }
+
+    public void testPhoneNumbers() {
+        linkify("call +1 650 555-1234.",
+                "call <a href=\"tel:+16505551234\">+1 650 555-1234</a>.");
+        linkify("(650) 555-1234", "<a href=\"tel:6505551234\">(650) 555-1234</a>");
+        linkify("(555-1234)", "(<a href=\"tel:5551234\">555-1234</a>)");
+        linkify("12345 and 5551234567x", "12345 and 5551234567x");
+    }
+}